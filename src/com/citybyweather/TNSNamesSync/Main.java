@@ -24,20 +24,60 @@
 
 package com.citybyweather.TNSNamesSync;
 
+import com.citybyweather.TNSNamesSync.classes.AliasIndexCache;
+import com.citybyweather.TNSNamesSync.classes.BackupCatalog;
+import com.citybyweather.TNSNamesSync.classes.BackupStore;
+import com.citybyweather.TNSNamesSync.classes.ContentHash;
+import com.citybyweather.TNSNamesSync.classes.CopySettings;
+import com.citybyweather.TNSNamesSync.classes.CopyTask;
+import com.citybyweather.TNSNamesSync.classes.DestinationListings;
+import com.citybyweather.TNSNamesSync.classes.FileMetadata;
 import com.citybyweather.TNSNamesSync.classes.FileSetAtPath;
 import com.citybyweather.TNSNamesSync.classes.OracleHome;
+import com.citybyweather.TNSNamesSync.classes.RetentionPolicy;
+import com.citybyweather.TNSNamesSync.classes.RollbackTask;
 import com.citybyweather.TNSNamesSync.classes.SimpleFile;
+import com.citybyweather.TNSNamesSync.classes.SyncLedger;
+import com.citybyweather.TNSNamesSync.classes.SyncOptions;
 import com.citybyweather.TNSNamesSync.enums.FileNames;
 import com.citybyweather.TNSNamesSync.exceptions.FilesNotFoundCurrentDirException;
+import com.citybyweather.TNSNamesSync.exceptions.InvalidSourceFilesException;
+import com.citybyweather.TNSNamesSync.tnsnames.OraFileValidator;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesCompactor;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesFlattener;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesIndexFile;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesError;
 import com.citybyweather.TNSNamesSync.classes.OracleHomeFinder;
+import com.citybyweather.TNSNamesSync.classes.FleetSync;
+import com.citybyweather.TNSNamesSync.classes.FleetTask;
+import com.citybyweather.TNSNamesSync.classes.RunJournal;
+import com.citybyweather.TNSNamesSync.classes.LockFile;
+import com.citybyweather.TNSNamesSync.classes.DirectoryLocks;
 
 import java.io.IOException;
-import java.text.ParseException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 
 public class Main {
 
+	private static final int DEFAULT_ROLLBACK_PARALLELISM = 8;
+	//put in the queue of homes to copy into after the last one
+	private static final OracleHome END_OF_HOMES = new OracleHome();
 
 	public static void main(String[] args) {
 
@@ -46,9 +86,43 @@ public class Main {
 		// See http://www.codeproject.com/Tips/315892/A-quick-and-easy-way-to-direct-Java-System-out-to
 		try {
 
-			FileSetAtPath newFiles = getFilePathsToCopy(args);
-			Map<String, OracleHome> oracleHomes = getOracleHomesToCopyInto();
-			copyFiles(newFiles, oracleHomes);
+			SyncOptions options = SyncOptions.parse(args);
+			//looking an alias up doesn't write anything, so it doesn't need the run lock
+			if (options.isResolve()) {
+				resolve(getOracleHomesToCopyInto(options), options);
+				return;
+			}
+
+			try (LockFile runLock = acquireRunLock(options)) {
+				if (runLock == null)
+					return;
+
+				if (options.isRollback()) {
+					rollback(getOracleHomesToCopyInto(options), options);
+					return;
+				}
+
+				FileSetAtPath newFiles = getFilePathsToCopy(options);
+				validateFiles(newFiles, options);
+				if (options.isFlatten())
+					flattenIncludes(newFiles);
+				if (options.isCompact())
+					compactFiles(newFiles, options);
+				if (options.isFleet()) {
+					syncFleet(newFiles, options);
+					return;
+				}
+				long discoveryStarted = System.nanoTime();
+				if (options.isPipeline()) {
+					BlockingQueue<OracleHome> oracleHomes = new LinkedBlockingQueue<>();
+					copyFiles(newFiles, oracleHomes, startDiscovery(options, oracleHomes), discoveryStarted, options);
+				} else {
+					BlockingQueue<OracleHome> oracleHomes = new LinkedBlockingQueue<>(getOracleHomesToCopyInto(options).values());
+					oracleHomes.add(END_OF_HOMES);
+					copyFiles(newFiles, oracleHomes, CompletableFuture.completedFuture(System.nanoTime() - discoveryStarted),
+							discoveryStarted, options);
+				}
+			}
 
 		} catch (FilesNotFoundCurrentDirException e) {
 
@@ -58,6 +132,12 @@ public class Main {
 			System.out.println(e.getMessage());
 
 
+		} catch (InvalidSourceFilesException e) {
+
+			System.out.println("The files to copy have errors, nothing was copied:");
+			System.out.println(e.getMessage());
+
+
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
@@ -78,28 +158,58 @@ public class Main {
 
 	/**
 	 *
-	 * @param args  command line arguments. We only need to examine the first, which could be the path to files
-	 *              if it's not specified, it's assumed that the program will look in the current executable dir
+	 * @param options  parsed command line options; --state-dir has the lock, --lock-wait is how long to wait for it
+	 * @return         the run lock, null if another run held it for the whole wait
+	 * @throws IOException
+	 * @throws InterruptedException
+	 *
+	 * Only one run at a time works with the state dir, as the ledger, journal and backup catalog are rewritten
+	 * by the run. A run that's started while another one is still going waits for it, or gives up.
+	 */
+	private static LockFile acquireRunLock(SyncOptions options) throws IOException, InterruptedException {
+
+		Files.createDirectories(options.getRunLockPath().getParent());
+		LockFile runLock = LockFile.acquire(options.getRunLockPath(),
+				TimeUnit.SECONDS.toMillis(options.getLockWaitSeconds()));
+
+		if (runLock == null) {
+			System.out.println("Another run is still going (it holds [" + options.getRunLockPath() + "]), nothing was done");
+			System.out.println("");
+		}
+
+		return runLock;
+	}
+
+
+	/**
+	 *
+	 * @param options  parsed command line options. We only need the path to files here;
+	 *                 if it's not specified, it's assumed that the program will look in the current executable dir.
+	 *                 With --include (and --exclude), every matching file under the path is copied instead
 	 * @return      returns FileSetAtPath of the files to copy
-	 * @throws ParseException
 	 * @throws IOException
 	 *
 	 * This function will examine the current executable dir or the dir passed in the args to try to find the tnsnames
 	 * and the sqlnet ora files. If none are found, an exception will be thrown. Otherwise, it will build
 	 * a FileSetAtPath and return it
 	 */
-	private static FileSetAtPath getFilePathsToCopy(String[] args) throws ParseException, IOException {
+	private static FileSetAtPath getFilePathsToCopy(SyncOptions options) throws IOException {
 
-		//if they passed an argument on the string, take the first one
-		String pathNoNames = args.length != 0 ? args[0] : System.getProperty("user.dir");
+		String pathNoNames = options.getSourcePath();
 		FileSetAtPath fileSet = new FileSetAtPath(pathNoNames);
 
-		//FileNames is an Enum - constants in other words
-		for (FileNames fileName : FileNames.values())
-			fileSet.add(fileName.toString());
-
-		if (!fileSet.anyExists())
-			throw new FilesNotFoundCurrentDirException(FileNames.listAll());
+		if (options.isTreeSync()) {
+			fileSet.addMatching(options.getIncludes(), options.getExcludes());
+			if (!fileSet.anyExists())
+				throw new FilesNotFoundCurrentDirException(options.getIncludes());
+		} else {
+			//FileNames is an Enum - constants in other words
+			for (FileNames fileName : FileNames.values())
+				fileSet.add(fileName.toString());
+
+			if (!fileSet.anyExists())
+				throw new FilesNotFoundCurrentDirException(FileNames.listAll());
+		}
 
 
 		System.out.println("Files to copy from [" + pathNoNames + "]:");
@@ -115,16 +225,131 @@ public class Main {
 
 	/**
 	 *
+	 * @param files    the files to copy
+	 * @param options  parsed command line options; with --compact, duplicate tnsnames.ora aliases aren't errors
+	 * @throws InvalidSourceFilesException  if any of the files has errors; nothing has been written anywhere yet.
+	 *                                      Unknown sqlnet.ora parameters are only warned about
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws IOException
+	 *
+	 * Each file is read, parsed and checked once, no matter how many homes it goes to, and the files are checked
+	 * at the same time. The parsed content stays with the file, so the copies don't read it again.
+	 */
+	private static void validateFiles(FileSetAtPath files, SyncOptions options)
+			throws InvalidSourceFilesException, InterruptedException, ExecutionException, IOException {
+
+		Map<String, Future<List<TnsNamesError>>> results = new LinkedHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.getFiles().size(), FileNames.values().length));
+		try {
+			for (FileNames fileName : FileNames.values()) {
+				SimpleFile file = files.getFiles().get(fileName.toString());
+				if (file != null)
+					results.put(fileName.toString(), executor.submit(() -> OraFileValidator.validate(
+							Paths.get(file.getPathNoName()), file.getTnsNamesIndex(),
+							//--compact keeps one definition of each tnsnames.ora alias, as --duplicates says
+							options.isCompact() && fileName == FileNames.TNSNAMES)));
+			}
+
+			Map<String, List<TnsNamesError>> errors = new LinkedHashMap<>();
+			for (Map.Entry<String, Future<List<TnsNamesError>>> result : results.entrySet()) {
+				if (!result.getValue().get().isEmpty())
+					errors.put(result.getKey(), result.getValue().get());
+			}
+
+			//shown even if there are errors, so everything gets fixed in one go
+			Boolean warned = false;
+			for (FileNames fileName : FileNames.values()) {
+				SimpleFile file = files.getFiles().get(fileName.toString());
+				if (file == null)
+					continue;
+				for (TnsNamesError warning : OraFileValidator.warnings(fileName, file.getTnsNamesIndex())) {
+					System.out.println("Warning: " + fileName + ", " + warning + ", copied anyway");
+					warned = true;
+				}
+			}
+			if (warned)
+				System.out.println("");
+
+			if (!errors.isEmpty())
+				throw new InvalidSourceFilesException(errors);
+
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+
+	/**
+	 *
+	 * @param files  the files to copy; only tnsnames.ora is flattened
+	 * @throws InvalidSourceFilesException  if an included file has errors, or files include each other
+	 * @throws IOException
+	 *
+	 * Resolves the IFILE includes once for the whole run, so every home gets the same single flattened file.
+	 */
+	private static void flattenIncludes(FileSetAtPath files) throws InvalidSourceFilesException, IOException {
+
+		SimpleFile file = files.getFiles().get(FileNames.TNSNAMES.toString());
+		if (file == null)
+			return;
+
+		TnsNamesFlattener flattener = new TnsNamesFlattener();
+		file.flattenIncludes(flattener);
+
+		System.out.println("IFILE includes flattened: " + flattener.getIncludeCount() + " files included into "
+				+ file.getName() + "\n");
+	}
+
+
+	/**
+	 *
+	 * @param files    the files to copy; only tnsnames.ora is compacted
+	 * @param options  parsed command line options; --duplicates, --alias-order and --alias-frequencies
+	 *                 decide which duplicates are kept and the order the entries are written in
+	 * @throws IOException
+	 *
+	 * Compacts tnsnames.ora once for the whole run, after the includes have been flattened if they were asked to be
+	 */
+	private static void compactFiles(FileSetAtPath files, SyncOptions options) throws IOException {
+
+		SimpleFile file = files.getFiles().get(FileNames.TNSNAMES.toString());
+		if (file == null)
+			return;
+
+		Map<String, Long> frequencies = options.getAliasFrequenciesPath() != null
+				? TnsNamesCompactor.loadFrequencies(options.getAliasFrequenciesPath()) : null;
+		TnsNamesCompactor compactor = new TnsNamesCompactor(options.getDuplicatePolicy(), options.getAliasOrder(), frequencies);
+
+		long sizeBefore = file.getContent().getSize();
+		TnsNamesCompactor.CompactResult result = file.compact(compactor);
+		long sizeAfter = file.getContent().getSize();
+
+		System.out.println(file.getName() + " compacted: " + sizeBefore + " -> " + sizeAfter + " bytes ("
+				+ (sizeBefore > 0 ? 100 * (sizeBefore - sizeAfter) / sizeBefore : 0) + "% smaller), "
+				+ result.getAliases() + " aliases in " + result.getEntries() + " entries, "
+				+ result.getDroppedAliases() + " duplicate definitions dropped (" + options.getDuplicatePolicy() + " wins), "
+				+ options.getAliasOrder() + " order\n");
+	}
+
+
+	/**
+	 *
+	 * @param options  parsed command line options; --batch-discovery switches to the single query discovery,
+	 *                 --discovery picks the providers
 	 * @return  returns the hash map of oracle homes; key is the oracle home name
 	 *          value is the path
 	 * @throws Exception
 	 */
 
-	private static Map<String, OracleHome> getOracleHomesToCopyInto() throws Exception {
+	private static Map<String, OracleHome> getOracleHomesToCopyInto(SyncOptions options) throws Exception {
 
 
 		//find all Oracle homes
 		OracleHomeFinder ohf = OracleHomeFinder.getInstance();
+		ohf.setBatchDiscovery(options.isBatchDiscovery());
+		if (options.getDiscoveryProviders() != null)
+			ohf.setProviders(options.getDiscoveryProviders());
 		Map<String, OracleHome> oracleHomes = ohf.find();
 
 		//if no paths are valid, throw an exception
@@ -144,53 +369,611 @@ public class Main {
 
 
 
+	/**
+	 *
+	 * @param options      parsed command line options; --batch-discovery switches to the single query discovery,
+	 *                     --discovery picks the providers
+	 * @param oracleHomes  gets every home as soon as it's found, then END_OF_HOMES once discovery is over
+	 *                     (even if it failed)
+	 * @return             how long discovery took, in nanoseconds; fails the way discovery failed
+	 *
+	 * Finds the Oracle homes on another thread, so the copies into the first homes found can start
+	 * while the rest are still being looked up.
+	 */
+	private static Future<Long> startDiscovery(SyncOptions options, BlockingQueue<OracleHome> oracleHomes) {
+
+		ExecutorService discovery = Executors.newSingleThreadExecutor();
+		try {
+			return discovery.submit(() -> {
+				long started = System.nanoTime();
+				try {
+					OracleHomeFinder ohf = OracleHomeFinder.getInstance();
+					ohf.setBatchDiscovery(options.isBatchDiscovery());
+					if (options.getDiscoveryProviders() != null)
+						ohf.setProviders(options.getDiscoveryProviders());
+					if (ohf.find(oracleHomes::add).isEmpty())
+						throw new Exception("No valid oracle homes found");
+				} finally {
+					oracleHomes.add(END_OF_HOMES);
+				}
+				return System.nanoTime() - started;
+			});
+		} finally {
+			discovery.shutdown();
+		}
+	}
+
+
 	/**
 	 *
 	 * @param files hash map of the files to copy. Key is the file name, value is the instance of Path
-	 * @param oracleHomes hash map of the oracle home paths;
-	 *                    key is the oracle home name, and value is the path including network\admin
+	 * @param oracleHomes the oracle homes to copy into, ending with END_OF_HOMES; they may still be coming in
+	 *                    while the first ones are copied into
+	 * @param discovery how long finding the homes took; done once every home is in the queue
+	 * @param discoveryStarted System.nanoTime() when finding the homes started
+	 * @param options parsed command line options; --parallel N fans the copies out to N threads,
+	 *                --ledger keeps track of what was written so unchanged destinations cost a single stat,
+	 *                --atomic replaces each destination in one rename instead of overwriting it in place,
+	 *                --backup-store keeps one backup per distinct content instead of a .bak per destination,
+	 *                --keep-* prune the backups in the background once the copies are done,
+	 *                --merge merges tnsnames.ora alias by alias instead of overwriting it,
+	 *                --pipeline has the homes copied into as they're found
+	 * @throws Exception if discovery failed (the homes found before that have been copied into),
+	 *                   or the copies couldn't be set up
+	 *
+	 * This function copies the files from the source locations to the destination.
+	 * Either way, the output is printed home by home in the same order.
+	 */
+	private static void copyFiles(FileSetAtPath files, BlockingQueue<OracleHome> oracleHomes, Future<Long> discovery,
+	                              long discoveryStarted, SyncOptions options) throws Exception {
+
+		long started = System.nanoTime();
+		List<CopyTask> tasks;
+
+		CopySettings settings = prepareCopies(files, options);
+		Future<BackupCatalog.PruneResult> pruning = null;
+		Boolean finished = false;
+
+		try {
+			if (options.isParallel())
+				tasks = copyFilesInParallel(files, oracleHomes, options.getParallelism(), settings);
+			else
+				tasks = copyFilesSequentially(files, oracleHomes, settings);
+			long copied = System.nanoTime();
+
+			//what was copied is recorded even if discovery then turns out to have failed part way
+			if (settings.getLedger() != null)
+				settings.getLedger().save();
+			finished = true;
+
+			long discoveryNanos;
+			try {
+				discoveryNanos = discovery.get();
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+
+			//pruning only touches backups, so it can run while the rest of the run wraps up
+			if (settings.getBackupCatalog() != null && options.getRetentionPolicy().isEnabled())
+				pruning = startPruning(settings.getBackupCatalog(), options.getRetentionPolicy());
+
+			storeAliasIndex(files, options);
+
+			printTimes(tasks, started, options);
+			printStageTimes(tasks, discoveryStarted, discoveryNanos, copied, options);
+			printJournal(settings.getJournal(), tasks);
+
+			if (pruning != null) {
+				BackupCatalog.PruneResult pruned = pruning.get();
+				System.out.println("Backups pruned: " + pruned.getFiles() + " files, " + pruned.getBytes() + " bytes reclaimed");
+				System.out.println("");
+			}
+
+		} finally {
+			if (settings.getJournal() != null)
+				settings.getJournal().close(finished);
+			if (settings.getBackupCatalog() != null)
+				settings.getBackupCatalog().close();
+		}
+	}
+
+
+	/**
+	 *
+	 * @param files    the files about to be copied
+	 * @param options  parsed command line options
+	 * @return         the settings shared by all of the copies
 	 * @throws IOException
+	 */
+	private static CopySettings prepareCopies(FileSetAtPath files, SyncOptions options) throws IOException {
+
+		//read every source file once up front, so parallel tasks share it instead of racing to read it
+		for (SimpleFile file : files.getFiles().values())
+			file.getContent();
+
+		CopySettings settings = createCopySettings(options);
+		if (options.isTreeSync()) {
+			//a whole tree is only written where it differs, comparing against one listing per destination dir
+			settings.setOnlyIfDifferent(true);
+			settings.setDestinationListings(new DestinationListings(files.getMaxDepth()));
+		}
+
+		if (options.isUseJournal())
+			settings.setJournal(openJournal(options));
+		settings.setDirectoryLocks(new DirectoryLocks(TimeUnit.SECONDS.toMillis(options.getLockWaitSeconds())));
+
+		return settings;
+	}
+
+
+	/**
+	 * Opens the run journal, resuming the run it's left from if the last run was interrupted
+	 */
+	private static RunJournal openJournal(SyncOptions options) throws IOException {
+
+		RunJournal journal = new RunJournal(options.getJournalPath());
+		journal.open();
+
+		if (journal.getInterruptedRunStarted() != null) {
+			System.out.println("Resuming the run started at [" + journal.getInterruptedRunStarted() + "], which was interrupted: "
+					+ journal.getInterruptedDone() + " files done are skipped, " + journal.getInterruptedUnfinished()
+					+ " unfinished are done again (" + journal.getStaleFilesDeleted() + " temp files deleted)");
+			System.out.println("");
+		}
+
+		return journal;
+	}
+
+
+	private static void printJournal(RunJournal journal, List<CopyTask> tasks) {
+
+		if (journal == null)
+			return;
+
+		//the time spent journaling, spread over the copies it was spent on
+		double millisPerCopy = tasks.isEmpty() ? 0
+				: journal.getNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1) / tasks.size();
+		System.out.println(String.format("Journal: %d records in %d writes, %.3f ms per copy",
+				journal.getRecords(), journal.getFlushes(), millisPerCopy));
+		System.out.println("");
+	}
+
+
+	/**
 	 *
-	 * This function copies the files from the source locations to the destination
+	 * @param files    the files to copy to every target
+	 * @param options  parsed command line options; --fleet is the manifest of target roots,
+	 *                 --target-timeout and --retries are per target, --parallel N caps the targets synced at once
+	 * @throws Exception
+	 *
+	 * Syncs every target root in the manifest in this one run: each target's homes are found under its root
+	 * and copied into, and a line is printed per target as it finishes. Ends with the throughput in targets per second.
 	 */
-	private static void copyFiles(FileSetAtPath files, Map<String, OracleHome> oracleHomes) throws IOException {
+	private static void syncFleet(FileSetAtPath files, SyncOptions options) throws Exception {
 
+		List<String> targets = FleetSync.readManifest(Paths.get(options.getFleetManifestPath()));
+		if (targets.isEmpty())
+			throw new Exception("No targets in the manifest [" + options.getFleetManifestPath() + "]");
 
+		CopySettings settings = prepareCopies(files, options);
+		Integer concurrency = options.isParallel() ? options.getParallelism() : FleetSync.DEFAULT_CONCURRENCY;
+		FleetSync fleet = new FleetSync(files, settings, concurrency,
+				TimeUnit.SECONDS.toMillis(options.getTargetTimeoutSeconds()), options.getRetries());
 
-		for (Map.Entry<String, OracleHome> oracleHome : oracleHomes.entrySet()) {
+		System.out.println("Fleet sync to " + targets.size() + " targets:");
+		System.out.println("+++++++++++++++++++++++++++++++++++++++++++");
+
+		long started = System.nanoTime();
+		List<FleetTask> results;
+		Boolean finished = false;
+		try {
+			results = fleet.run(targets);
+
+			if (settings.getLedger() != null)
+				settings.getLedger().save();
+			finished = true;
+
+		} finally {
+			//the targets that timed out may still be copying, anything they journal from now on is dropped
+			if (settings.getJournal() != null)
+				settings.getJournal().close(finished);
+			if (settings.getBackupCatalog() != null)
+				settings.getBackupCatalog().close();
+		}
+		long elapsedNanos = System.nanoTime() - started;
+		System.out.println("");
+
+		storeAliasIndex(files, options);
+
+		List<CopyTask> tasks = new ArrayList<>();
+		int ok = 0, failed = 0, timedOut = 0;
+		for (FleetTask result : results) {
+			tasks.addAll(result.getTasks());
+			if (result.isOk())
+				ok++;
+			else if (result.isTimedOut())
+				timedOut++;
+			else
+				failed++;
+		}
+		printSummary(tasks);
+
+		double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+		System.out.println("Targets: " + ok + " ok, " + failed + " failed, " + timedOut + " timed out");
+		System.out.println(String.format("Fleet time: %d ms for %d targets (%.1f targets/s) using %s",
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos), results.size(), seconds > 0 ? results.size() / seconds : 0,
+				fleet.isVirtualThreads() ? "virtual threads, up to " + concurrency + " targets at a time" : concurrency + " threads"));
+		System.out.println("");
+		printJournal(settings.getJournal(), tasks);
+	}
+
+
+	private static CopySettings createCopySettings(SyncOptions options) throws IOException {
+
+		CopySettings settings = new CopySettings();
+		settings.setOnlyIfDifferent(options.isOnlyIfDifferent());
+		settings.setAtomic(options.isAtomic());
+		settings.setMerge(options.isMerge());
+
+		if (options.isUseLedger()) {
+			SyncLedger ledger = new SyncLedger(options.getLedgerPath());
+			ledger.load();
+			settings.setLedger(ledger);
+		}
+
+		//the catalog is what pruning works from, so backups are always recorded in it when possible
+		BackupCatalog catalog = new BackupCatalog(options.getBackupCatalogPath());
+		try {
+			catalog.open();
+			settings.setBackupCatalog(catalog);
+		} catch (IOException e) {
+			//the store can't work without it, a plain sync can
+			if (options.isUseBackupStore())
+				throw e;
+			System.out.println("Backup catalog [" + options.getBackupCatalogPath() + "] can't be opened, backups won't be recorded");
+			System.out.println("");
+		}
+
+		if (options.isUseBackupStore()) {
+			BackupStore backupStore = new BackupStore(options.getBackupStoreDir());
+			backupStore.open();
+			settings.setBackupStore(backupStore);
+		}
+
+		return settings;
+	}
+
+
+	private static Future<BackupCatalog.PruneResult> startPruning(final BackupCatalog catalog,
+	                                                              final RetentionPolicy policy) {
+
+		ExecutorService pruner = Executors.newSingleThreadExecutor();
+		try {
+			return pruner.submit(() -> catalog.prune(policy));
+		} finally {
+			pruner.shutdown();
+		}
+	}
+
+
+	private static void printTimes(List<CopyTask> tasks, long started, SyncOptions options) {
+
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		long sequentialNanos = 0;
+		for (CopyTask task : tasks)
+			sequentialNanos += task.getDurationNanos();
+		long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(sequentialNanos);
+
+		printSummary(tasks);
+		System.out.print("Copy time: " + elapsedMillis + " ms for " + tasks.size() + " copies");
+		if (options.isParallel()) {
+			//the sum of the individual copy times is what a sequential run would have spent copying
+			System.out.print(" using " + options.getParallelism() + " threads");
+			System.out.print(" (sequential baseline: " + sequentialMillis + " ms");
+			if (elapsedMillis > 0)
+				System.out.print(String.format(", %.1fx speedup", (double) sequentialMillis / elapsedMillis));
+			System.out.print(")");
+		}
+		System.out.println("\n");
+	}
 
-			System.out.println("Processing Oracle Home [" + oracleHome.getValue().getName() + "]");
-			System.out.println("+++++++++++++++++++++++++++++++++++++++++++");
+
+	/**
+	 * The copy stage starts with the first copy, so with --pipeline it leaves out the wait for the first home.
+	 * Whatever the two stages add up to beyond the total is the time they overlapped
+	 */
+	private static void printStageTimes(List<CopyTask> tasks, long discoveryStarted, long discoveryNanos, long copied,
+	                                    SyncOptions options) {
+
+		long copyStarted = copied;
+		for (CopyTask task : tasks)
+			copyStarted = Math.min(copyStarted, task.getStartedNanos());
+
+		long discoveryMillis = TimeUnit.NANOSECONDS.toMillis(discoveryNanos);
+		long copyMillis = TimeUnit.NANOSECONDS.toMillis(copied - copyStarted);
+		long totalMillis = TimeUnit.NANOSECONDS.toMillis(copied - discoveryStarted);
+
+		System.out.print("Stages: discovery " + discoveryMillis + " ms, copy " + copyMillis + " ms, total " + totalMillis + " ms");
+		if (options.isPipeline())
+			System.out.print(" (" + Math.max(discoveryMillis + copyMillis - totalMillis, 0) + " ms overlapped)");
+		System.out.println("\n");
+	}
+
+
+	private static List<CopyTask> copyFilesSequentially(FileSetAtPath files, BlockingQueue<OracleHome> oracleHomes,
+	                                                    CopySettings settings) throws InterruptedException {
+
+		List<CopyTask> tasks = new ArrayList<>();
+		OracleHome oracleHome;
+
+		while ((oracleHome = oracleHomes.take()) != END_OF_HOMES) {
+
+			printHomeHeader(oracleHome);
 
 			for (Map.Entry<String, SimpleFile> file : files.getFiles().entrySet()) {
 
-				for (String tnsPath : oracleHome.getValue().getTNSPaths()) {
-					try {
-						file.getValue().copy(tnsPath, true);
-					} catch (IOException e) {
-						//e.printStackTrace();
-						System.out.println("Error occurred trying to copy " + file.getValue().getName() + " file into: [" + tnsPath + "]");
-						System.out.println("");
-						continue;
-					}
+				for (String tnsPath : oracleHome.getTNSPaths()) {
+					CopyTask task = new CopyTask(file.getValue(), tnsPath, settings);
+					tasks.add(task);
+					System.out.println(task.call());
+				}
+
+			}
+
+			System.out.println("");
+		}
+
+		return tasks;
+	}
+
+
+	private static List<CopyTask> copyFilesInParallel(FileSetAtPath files, BlockingQueue<OracleHome> oracleHomes,
+	                                                  Integer parallelism, CopySettings settings)
+			throws InterruptedException, ExecutionException {
 
-					System.out.print("- file copied:");
-					System.out.println(" [" + file.getValue().getName() + "] to [" + tnsPath + "]");
-					if (file.getValue().getBackupCreatedLastCopy()) {
-						System.out.print("- backup created:");
-						System.out.println(" [" + file.getValue().getBackupFullPath() + "]");
+		List<CopyTask> tasks = new ArrayList<>();
+		Map<OracleHome, List<Future<String>>> outputByHome = new LinkedHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		OracleHome oracleHome;
+
+		try {
+			while ((oracleHome = oracleHomes.take()) != END_OF_HOMES) {
+
+				List<Future<String>> homeOutput = new ArrayList<>();
+				outputByHome.put(oracleHome, homeOutput);
+
+				for (Map.Entry<String, SimpleFile> file : files.getFiles().entrySet()) {
+
+					for (String tnsPath : oracleHome.getTNSPaths()) {
+						//every copy returns its own result, so all of the tasks share the one SimpleFile
+						//and its source content, read only once
+						CopyTask task = new CopyTask(file.getValue(), tnsPath, settings);
+						tasks.add(task);
+						homeOutput.add(executor.submit(task));
 					}
-					System.out.println("");
 				}
 
+				//homes that are done are printed while the next ones are still being found
+				printFinishedHomes(outputByHome, false);
+			}
+
+			printFinishedHomes(outputByHome, true);
+
+		} finally {
+			executor.shutdown();
+		}
+
+		return tasks;
+	}
+
+
+	/**
+	 * Prints the output of the homes in submission order, up to the first home that's still copying
+	 *
+	 * @param outputByHome  the homes not printed yet; the printed ones are taken out
+	 * @param wait          wait for every home to finish and print them all
+	 */
+	private static void printFinishedHomes(Map<OracleHome, List<Future<String>>> outputByHome, Boolean wait)
+			throws InterruptedException, ExecutionException {
+
+		Iterator<Map.Entry<OracleHome, List<Future<String>>>> homes = outputByHome.entrySet().iterator();
+		while (homes.hasNext()) {
+
+			Map.Entry<OracleHome, List<Future<String>>> homeOutput = homes.next();
+			if (!wait) {
+				for (Future<String> output : homeOutput.getValue()) {
+					if (!output.isDone())
+						return;
+				}
+			}
+
+			printHomeHeader(homeOutput.getKey());
+			for (Future<String> output : homeOutput.getValue())
+				System.out.println(output.get());
+
+			System.out.println("");
+			homes.remove();
+		}
+	}
+
+
+	private static void printSummary(List<CopyTask> tasks) {
+
+		int copied = 0, skipped = 0, resumed = 0, locked = 0, failed = 0;
+		for (CopyTask task : tasks) {
+			if (task.isCopied())
+				copied++;
+			else if (task.isResumed())
+				resumed++;
+			else if (task.isLocked())
+				locked++;
+			else if (task.isSkipped())
+				skipped++;
+			else
+				failed++;
+		}
+
+		System.out.print("Summary: " + copied + " copied, " + skipped + " skipped (unchanged), " + failed + " failed");
+		if (resumed > 0)
+			System.out.print(", " + resumed + " skipped (done by the interrupted run)");
+		if (locked > 0)
+			System.out.print(", " + locked + " skipped (dir locked by another run)");
+		System.out.println("");
+
+		int added = 0, changed = 0, removed = 0, merged = 0;
+		for (CopyTask task : tasks) {
+			if (task.getMergeResult() == null)
+				continue;
+			merged++;
+			added += task.getMergeResult().getAdded();
+			changed += task.getMergeResult().getChanged();
+			removed += task.getMergeResult().getRemoved();
+		}
+		if (merged > 0)
+			System.out.println("Aliases merged into " + merged + " files: " + added + " added, " + changed + " changed, " + removed + " removed");
+
+		//every file is stat'ed once per run, what's asked about it after that comes out of its snapshot
+		FileMetadata metadata = FileMetadata.getInstance();
+		System.out.println("Filesystem calls: " + metadata.getReads() + " stats, " + metadata.getListings()
+				+ " dir listings, " + metadata.getHits() + " stats saved");
+	}
+
+
+	/**
+	 *
+	 * @param oracleHomes   the oracle homes to roll back
+	 * @param options       parsed command line options; --rollback [timestamp] picks the backups,
+	 *                      --parallel N sets how many files are restored at the same time
+	 * @throws Exception
+	 *
+	 * Restores every file of every home from the newest backup taken at or before the timestamp (or the newest
+	 * backup if there's no timestamp). The backups are looked up in the backup catalog and restored concurrently,
+	 * with the same atomic replace as --atomic, so the current files get backed up as well.
+	 */
+	private static void rollback(Map<String, OracleHome> oracleHomes, SyncOptions options) throws Exception {
+
+		long started = System.nanoTime();
+
+		BackupCatalog catalog = new BackupCatalog(options.getBackupCatalogPath());
+		catalog.open();
+
+		CopySettings settings = new CopySettings();
+		settings.setAtomic(true);
+		settings.setOnlyIfDifferent(true);
+		settings.setBackupCatalog(catalog);
+		if (options.isUseBackupStore())
+			settings.setBackupStore(new BackupStore(options.getBackupStoreDir()));
+
+		int parallelism = options.isParallel() ? options.getParallelism() : DEFAULT_ROLLBACK_PARALLELISM;
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		List<Future<RollbackTask>> restores = new ArrayList<>();
+
+		try {
+			for (OracleHome oracleHome : oracleHomes.values()) {
+				for (FileNames fileName : FileNames.values()) {
+					for (String tnsPath : oracleHome.getTNSPaths())
+						restores.add(executor.submit(new RollbackTask(oracleHome.getName(), fileName.toString(),
+								tnsPath, options.getRollbackTimeStamp(), catalog, settings)));
+				}
+			}
+
+			System.out.println("Rollback to " + (options.getRollbackTimeStamp() == null ? "the newest backups" : "[" + options.getRollbackTimeStamp() + "]"));
+			System.out.println("+++++++++++++++++++++++++++++++++++++++++++");
+			String rowFormat = "%-25s %-14s %-21s %-16s %s%n";
+			System.out.printf(rowFormat, "Oracle Home", "File", "Backup", "Result", "Path");
+			for (Future<RollbackTask> restore : restores) {
+				RollbackTask task = restore.get();
+				System.out.printf(rowFormat, task.getHomeName(), task.getFileName(),
+						task.getBackup() == null ? "-" : task.getBackup().getTimeStamp(), task.getResult(), task.getTnsPath());
 			}
 
+		} finally {
+			executor.shutdown();
+			catalog.close();
+		}
+
+		System.out.println("");
+		System.out.println("Rollback time: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms for "
+				+ restores.size() + " files");
+		System.out.println("");
+	}
+
+
+	/**
+	 * Indexes the tnsnames.ora that was just copied, so --resolve can answer for every home that got it
+	 * without parsing anything. A run that can't write the index still succeeds
+	 */
+	private static void storeAliasIndex(FileSetAtPath files, SyncOptions options) {
+
+		SimpleFile file = files.getFiles().get(FileNames.TNSNAMES.toString());
+		if (file == null)
+			return;
+
+		try {
+			new AliasIndexCache(options.getAliasIndexDir()).store(file.getContent().getHash(), file.getTnsNamesIndex());
+		} catch (IOException e) {
+			System.out.println("Alias index can't be written to [" + options.getAliasIndexDir() + "]: " + e.getMessage());
 			System.out.println("");
 		}
 	}
 
 
+	/**
+	 *
+	 * @param oracleHomes   the oracle homes to look the alias up in
+	 * @param options       parsed command line options; --resolve ALIAS is the alias to look up
+	 * @throws IOException
+	 *
+	 * Looks the alias up in the tnsnames.ora of every home, through the alias index for the file's content.
+	 * A file the ledger knows is hashed without reading it; an index that's missing is built and kept for next time.
+	 */
+	private static void resolve(Map<String, OracleHome> oracleHomes, SyncOptions options) throws IOException {
 
-}
+		long started = System.nanoTime();
+		AliasIndexCache cache = new AliasIndexCache(options.getAliasIndexDir());
+		SyncLedger ledger = new SyncLedger(options.getLedgerPath());
+		ledger.load();
+		int files = 0;
 
+		System.out.println("Resolving [" + options.getResolveAlias() + "]");
+		System.out.println("+++++++++++++++++++++++++++++++++++++++++++");
+		for (OracleHome oracleHome : oracleHomes.values()) {
+			for (String tnsPath : oracleHome.getTNSPaths()) {
+
+				Path tnsnamesPath = Paths.get(tnsPath, FileNames.TNSNAMES.toString());
+				System.out.print("- [" + oracleHome.getName() + "] " + tnsnamesPath);
+				if (!Files.isRegularFile(tnsnamesPath)) {
+					System.out.println(": no " + FileNames.TNSNAMES);
+					continue;
+				}
+
+				files++;
+				String hash = ledger.getRecordedHash(tnsnamesPath);
+				if (hash == null)
+					hash = ContentHash.of(tnsnamesPath);
 
+				TnsNamesIndexFile.Lookup lookup = cache.getOrBuild(tnsnamesPath, hash).lookup(options.getResolveAlias());
+				if (lookup == null)
+					System.out.println(": not defined");
+				else
+					System.out.println(", line " + lookup.getLine() + ":\n    " + lookup.getValue());
+			}
+		}
+
+		System.out.println("");
+		System.out.println("Resolve time: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms for "
+				+ files + " files, " + cache.getBuilt() + " indexes built");
+		System.out.println("");
+	}
+
+
+	private static void printHomeHeader(OracleHome oracleHome) {
+		System.out.println("Processing Oracle Home [" + oracleHome.getName() + "]");
+		System.out.println("+++++++++++++++++++++++++++++++++++++++++++");
+		for (Map.Entry<String, String> shared : oracleHome.getSharedTNSPaths().entrySet())
+			System.out.println("- same dir as " + shared.getValue() + ", not written again: [" + shared.getKey() + "]\n");
+	}
+
+
+
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.benchmarks;
+
+import com.citybyweather.TNSNamesSync.classes.Command;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Runs Command against "sh -c" stand-ins for reg.exe, so it can be checked on Linux. First checks that:
+ *	- a command filling stderr before it prints to stdout doesn't hang
+ *	- matching lines are streamed to the consumer once each, in order
+ *	- the exit code and stderr of a failed command are kept
+ *	- a command that runs past its timeout is killed, along with the processes it started
+ *	- a command whose own process is done, but which left a process behind holding its output open, times out too
+ * then prints how fast the output of big commands is read, matched and deduplicated.
+ *
+ * Run with: java -cp TNSNamesSync.jar com.citybyweather.TNSNamesSync.benchmarks.CommandBenchmark [lines]
+ */
+public class CommandBenchmark {
+
+	private static final String SHELL = "/bin/sh";
+	private static final int MEASURED_ROUNDS = 3;
+
+
+	public static void main(String[] args) throws Exception {
+
+		if (!Files.isExecutable(Paths.get(SHELL))) {
+			System.out.println("Needs " + SHELL + ", nothing was run");
+			return;
+		}
+
+		int lineCount = args.length != 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		checkBothStreamsDrained();
+		checkStreamedLines();
+		checkFailure();
+		checkTimeout();
+		checkPipesHeldOpen();
+		System.out.println("Checks passed");
+
+		System.out.println("lines  distinct  time (ms)  lines/s");
+		for (int lines : new int[] {lineCount / 10, lineCount}) {
+			for (Boolean distinct : new Boolean[] {false, true}) {
+
+				long nanos = 0;
+				for (int i = 0; i < MEASURED_ROUNDS; i++)
+					nanos += execute(lines, distinct);
+
+				double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1) / MEASURED_ROUNDS;
+				System.out.println(String.format("%5dk  %8s  %9.1f  %7.0f", lines / 1000, distinct, seconds * 1000, lines / seconds));
+			}
+		}
+	}
+
+
+	//every other line matches, and every matching line is printed twice, so the dedup has work to do
+	private static long execute(int lines, Boolean distinct) throws Exception {
+
+		int keys = lines / 2;
+		Command cmd = sh("seq 1 " + keys + " | awk '{ print \"KEY_\" int($1 / 2); print \"VALUE_\" $1 }'", "^KEY_.*$");
+		cmd.setDistinct(distinct);
+
+		long started = System.nanoTime();
+		List<String> output = cmd.execute();
+		long nanos = System.nanoTime() - started;
+
+		int expected = distinct ? keys / 2 + 1 : keys;
+		check(output.size() == expected, "expected " + expected + " lines, got " + output.size());
+		return nanos;
+	}
+
+
+	//without stderr being drained while the command runs, it blocks as soon as the pipe is full
+	private static void checkBothStreamsDrained() throws Exception {
+
+		Command cmd = sh("seq 1 100000 >&2; seq 1 100000", null);
+		cmd.setTimeout(30, TimeUnit.SECONDS);
+		cmd.setDistinct(false);
+
+		List<String> output = cmd.execute();
+		check(output.size() == 100000 && cmd.getErrorOutput().size() == 100000, "both streams read in full");
+	}
+
+	private static void checkStreamedLines() throws Exception {
+
+		Command cmd = sh("for i in 1 2 3; do echo KEY_a; echo other; done; echo '  KEY_b  '", "^KEY_.*$");
+
+		List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+		cmd.execute(streamed::add);
+		check(streamed.equals(Arrays.asList("KEY_a", "KEY_b")), "matching lines streamed once each, trimmed");
+	}
+
+	private static void checkFailure() throws Exception {
+
+		Command cmd = sh("echo 'ERROR: The system was unable to find the specified registry key or value.' >&2; exit 1", null);
+
+		check(cmd.execute().isEmpty() && cmd.getExitValue() == 1
+				&& cmd.getErrorOutput().get(0).startsWith("ERROR:"), "exit code and stderr kept");
+	}
+
+	//the same as cmd.exe starting reg.exe: the shell's child must be killed too
+	private static void checkTimeout() throws Exception {
+
+		Path pidFile = Files.createTempFile("command-benchmark", ".pid");
+		try {
+			Command cmd = sh("sleep 60 & echo $! > " + pidFile + "; wait", null);
+			cmd.setTimeout(1, TimeUnit.SECONDS);
+
+			long started = System.nanoTime();
+			try {
+				cmd.execute();
+				check(false, "timed out");
+			} catch (IOException e) {
+				check(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10), "timed out");
+			}
+
+			long childPid = Long.parseLong(new String(Files.readAllBytes(pidFile), StandardCharsets.US_ASCII).trim());
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (ProcessHandle.of(childPid).map(ProcessHandle::isAlive).orElse(false) && System.nanoTime() < deadline)
+				Thread.sleep(50);
+			check(!ProcessHandle.of(childPid).map(ProcessHandle::isAlive).orElse(false), "child process killed");
+
+		} finally {
+			Files.deleteIfExists(pidFile);
+		}
+	}
+
+
+	/*
+		The shell exits well within the timeout, but the sleep it started in the background keeps its stdout open.
+		The shell stays long enough for the output to be waited on: once a process exits, the JDK closes its output
+		itself, unless it's being read at that moment
+	*/
+	private static void checkPipesHeldOpen() throws Exception {
+
+		Path pidFile = Files.createTempFile("command-benchmark", ".pid");
+		try {
+			Command cmd = sh("sleep 60 & echo $! > " + pidFile + "; sleep 0.3", null);
+			cmd.setTimeout(1, TimeUnit.SECONDS);
+
+			long started = System.nanoTime();
+			try {
+				cmd.execute();
+				check(false, "timed out with the output held open");
+			} catch (IOException e) {
+				check(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10), "timed out with the output held open");
+			}
+
+		} finally {
+			//once the shell is gone, the sleep is no longer its child, so it's killed here
+			String pid = new String(Files.readAllBytes(pidFile), StandardCharsets.US_ASCII).trim();
+			if (!pid.isEmpty())
+				ProcessHandle.of(Long.parseLong(pid)).ifPresent(ProcessHandle::destroyForcibly);
+			Files.deleteIfExists(pidFile);
+		}
+	}
+
+
+	private static Command sh(String script, String outputPatternToMatch) {
+		return new Command(new String[] {SHELL, "-c", script}, outputPatternToMatch);
+	}
+
+	private static void check(Boolean passed, String what) {
+		if (!passed)
+			throw new IllegalStateException("Check failed: " + what);
+	}
+}
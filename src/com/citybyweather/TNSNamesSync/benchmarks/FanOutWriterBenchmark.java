@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.benchmarks;
+
+import com.citybyweather.TNSNamesSync.classes.ContentHash;
+import com.citybyweather.TNSNamesSync.classes.SourceContent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Compares copying a tnsnames.ora to 1, 10 and 100 destinations the old way (Files.copy per destination,
+ * plus a separate read to hash the source) against reading it once with SourceContent and writing that buffer out.
+ *
+ * Run with: java -cp TNSNamesSync.jar com.citybyweather.TNSNamesSync.benchmarks.FanOutWriterBenchmark [source_size_kb]
+ */
+public class FanOutWriterBenchmark {
+
+	private static final int[] TARGET_COUNTS = {1, 10, 100};
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 10;
+
+
+	public static void main(String[] args) throws IOException {
+
+		int sourceSizeKb = args.length != 0 ? Integer.parseInt(args[0]) : 256;
+		Path workDir = Files.createTempDirectory("fanout-benchmark");
+
+		try {
+			Path source = createSource(workDir, sourceSizeKb);
+			System.out.println("Source: " + sourceSizeKb + " KB");
+			System.out.println("targets  Files.copy (ms)  fan-out (ms)");
+
+			for (int targetCount : TARGET_COUNTS) {
+
+				List<Path> destinations = createDestinations(workDir, targetCount);
+
+				for (int i = 0; i < WARMUP_ROUNDS; i++) {
+					copyPerDestination(source, destinations);
+					fanOut(source, destinations);
+				}
+
+				long copyNanos = 0, fanOutNanos = 0;
+				for (int i = 0; i < MEASURED_ROUNDS; i++) {
+					copyNanos += copyPerDestination(source, destinations);
+					fanOutNanos += fanOut(source, destinations);
+				}
+
+				System.out.println(String.format("%7d  %15.2f  %12.2f", targetCount,
+						toMillis(copyNanos) / MEASURED_ROUNDS, toMillis(fanOutNanos) / MEASURED_ROUNDS));
+			}
+
+		} finally {
+			deleteRecursively(workDir);
+		}
+	}
+
+
+	private static long copyPerDestination(Path source, List<Path> destinations) throws IOException {
+
+		long started = System.nanoTime();
+
+		ContentHash.of(source);
+		for (Path destination : destinations)
+			Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+
+		return System.nanoTime() - started;
+	}
+
+	private static long fanOut(Path source, List<Path> destinations) throws IOException {
+
+		long started = System.nanoTime();
+
+		SourceContent content = SourceContent.load(source);
+		for (Path destination : destinations)
+			content.writeTo(destination);
+
+		return System.nanoTime() - started;
+	}
+
+
+	private static Path createSource(Path workDir, int sizeKb) throws IOException {
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; sb.length() < sizeKb * 1024; i++) {
+			sb.append("ALIAS").append(i).append(" = (DESCRIPTION = (ADDRESS = (PROTOCOL = TCP)(HOST = db")
+					.append(i).append(".example.com)(PORT = 1521)) (CONNECT_DATA = (SERVICE_NAME = SVC")
+					.append(i).append(")))\n");
+		}
+
+		Path source = workDir.resolve("tnsnames.ora");
+		Files.write(source, sb.toString().getBytes(StandardCharsets.US_ASCII));
+		return source;
+	}
+
+	private static List<Path> createDestinations(Path workDir, int count) throws IOException {
+
+		List<Path> destinations = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Path dir = Files.createDirectories(workDir.resolve("targets" + count).resolve("home" + i));
+			destinations.add(dir.resolve("tnsnames.ora"));
+		}
+
+		return destinations;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.benchmarks;
+
+import com.citybyweather.TNSNamesSync.classes.CopySettings;
+import com.citybyweather.TNSNamesSync.classes.FileSetAtPath;
+import com.citybyweather.TNSNamesSync.classes.FleetSync;
+import com.citybyweather.TNSNamesSync.classes.FleetTask;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Syncs a tnsnames.ora to a fleet of fake machines: local dirs laid out like a system drive, each with an
+ * inventory.xml listing two homes. Prints the throughput in targets per second at a few concurrency levels,
+ * which shows how far a fleet run overlaps the targets (most of the time on real shares is spent waiting on the network).
+ *
+ * Run with: java -cp TNSNamesSync.jar com.citybyweather.TNSNamesSync.benchmarks.FleetSyncBenchmark [targets]
+ */
+public class FleetSyncBenchmark {
+
+	private static final int[] CONCURRENCY_LEVELS = {1, 16, 256};
+	private static final int WARMUP_ROUNDS = 1;
+	private static final int MEASURED_ROUNDS = 3;
+
+	private static final String INVENTORY = "<?xml version=\"1.0\" standalone=\"yes\" ?>\n"
+			+ "<INVENTORY>\n<HOME_LIST>\n"
+			+ "<HOME NAME=\"OraClient19Home1\" LOC=\"C:\\oracle\\product\\19.0.0\\client_1\" TYPE=\"O\" IDX=\"1\"/>\n"
+			+ "<HOME NAME=\"OraClient12Home1_32bit\" LOC=\"C:\\oracle\\product\\12.2.0\\client_32\" TYPE=\"O\" IDX=\"2\"/>\n"
+			+ "</HOME_LIST>\n</INVENTORY>\n";
+
+
+	public static void main(String[] args) throws Exception {
+
+		int targetCount = args.length != 0 ? Integer.parseInt(args[0]) : 1000;
+		Path workDir = Files.createTempDirectory("fleet-benchmark");
+		PrintStream out = System.out;
+
+		try {
+			FileSetAtPath files = createSource(workDir);
+			List<String> targets = createTargets(workDir, targetCount);
+			System.out.println("Targets: " + targetCount + ", 2 homes each");
+			System.out.println("concurrency  time (ms)  targets/s");
+
+			for (int concurrency : CONCURRENCY_LEVELS) {
+
+				//the result line of every target would drown the table
+				System.setOut(new PrintStream(new OutputStream() {
+					@Override
+					public void write(int b) {
+					}
+				}));
+				for (int i = 0; i < WARMUP_ROUNDS; i++)
+					sync(files, targets, concurrency);
+
+				long nanos = 0;
+				for (int i = 0; i < MEASURED_ROUNDS; i++)
+					nanos += sync(files, targets, concurrency);
+				System.setOut(out);
+
+				double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1) / MEASURED_ROUNDS;
+				System.out.println(String.format("%11d  %9.1f  %9.1f", concurrency, seconds * 1000, targetCount / seconds));
+			}
+
+		} finally {
+			System.setOut(out);
+			deleteRecursively(workDir);
+		}
+	}
+
+
+	private static long sync(FileSetAtPath files, List<String> targets, int concurrency) throws Exception {
+
+		long started = System.nanoTime();
+
+		List<FleetTask> results = new FleetSync(files, new CopySettings(), concurrency, TimeUnit.MINUTES.toMillis(1), 0).run(targets);
+		for (FleetTask result : results) {
+			if (!result.isOk())
+				throw new IllegalStateException(result.getTarget() + ": " + result.getError());
+		}
+
+		return System.nanoTime() - started;
+	}
+
+
+	private static FileSetAtPath createSource(Path workDir) throws Exception {
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append("ALIAS").append(i).append(" = (DESCRIPTION = (ADDRESS = (PROTOCOL = TCP)(HOST = db")
+					.append(i).append(".example.com)(PORT = 1521)) (CONNECT_DATA = (SERVICE_NAME = SVC")
+					.append(i).append(")))\n");
+		}
+
+		Path sourceDir = Files.createDirectories(workDir.resolve("source"));
+		Files.write(sourceDir.resolve("tnsnames.ora"), sb.toString().getBytes(StandardCharsets.US_ASCII));
+
+		FileSetAtPath files = new FileSetAtPath(sourceDir.toString());
+		files.add("tnsnames.ora");
+		return files;
+	}
+
+	private static List<String> createTargets(Path workDir, int count) throws IOException {
+
+		List<String> targets = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Path root = workDir.resolve("host" + i);
+			Path inventoryDir = Files.createDirectories(root.resolve("Program Files").resolve("Oracle")
+					.resolve("Inventory").resolve("ContentsXML"));
+			Files.write(inventoryDir.resolve("inventory.xml"), INVENTORY.getBytes(StandardCharsets.UTF_8));
+			Files.createDirectories(root.resolve("oracle").resolve("product").resolve("19.0.0").resolve("client_1")
+					.resolve("network").resolve("admin"));
+			Files.createDirectories(root.resolve("oracle").resolve("product").resolve("12.2.0").resolve("client_32")
+					.resolve("network").resolve("admin"));
+			targets.add(root.toString());
+		}
+
+		return targets;
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
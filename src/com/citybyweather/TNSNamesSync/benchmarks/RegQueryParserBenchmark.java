@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.benchmarks;
+
+import com.citybyweather.TNSNamesSync.classes.Command;
+import com.citybyweather.TNSNamesSync.classes.RecursiveRegQueryParser;
+import com.citybyweather.TNSNamesSync.classes.RegistryOutputParser;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Checks RecursiveRegQueryParser against the recorded output of "reg query HKLM\SOFTWARE\ORACLE /s /v ORACLE_HOME"
+ * for both registry views (reg-query-oracle-homes.txt, next to this class), so it can be verified away from Windows.
+ * The recording has homes in both views (with the same and with different dirs), a path with spaces, a REG_EXPAND_SZ
+ * value, an old style HOME0 key and a KEY_* key without an ORACLE_HOME. Where there's a shell, the recording is also
+ * read through Command, the way the batch discovery reads reg.exe. Then prints how fast big outputs are parsed.
+ *
+ * Run with: java -cp TNSNamesSync.jar com.citybyweather.TNSNamesSync.benchmarks.RegQueryParserBenchmark [homes]
+ */
+public class RegQueryParserBenchmark {
+
+	private static final String RECORDED_OUTPUT = "reg-query-oracle-homes.txt";
+	private static final String SHELL = "/bin/sh";
+	private static final int MEASURED_ROUNDS = 5;
+
+
+	public static void main(String[] args) throws Exception {
+
+		int homeCount = args.length != 0 ? Integer.parseInt(args[0]) : 100000;
+		RegistryOutputParser parser = new RecursiveRegQueryParser();
+
+		Map<String, List<String>> expected = new LinkedHashMap<>();
+		expected.put("OraClient11g_home1", Arrays.asList("c:\\oracle\\product\\11.2.0\\client_1"));
+		expected.put("OraClient19Home1_32bit", Arrays.asList("C:\\oracle\\product\\19.0.0\\client_32"));
+		expected.put("OraDB19Home1", Arrays.asList("D:\\app\\oracle\\product\\19.0.0\\dbhome_1_32",
+				"D:\\app\\Program Files\\oracle\\product\\19.0.0\\dbhome_1"));
+
+		List<String> recorded = readRecordedOutput();
+		check(parser.parse(recorded), expected, "recorded output");
+
+		if (Files.isExecutable(Paths.get(SHELL))) {
+			Path recording = Files.createTempFile("reg-query", ".txt");
+			try {
+				Files.write(recording, String.join("\r\n", recorded).getBytes(StandardCharsets.US_ASCII));
+				Command cmd = new Command(new String[] {SHELL, "-c", "cat '" + recording + "'"});
+				cmd.setDistinct(false);
+				check(parser.parse(cmd.execute()), expected, "recorded output read through Command");
+			} finally {
+				Files.deleteIfExists(recording);
+			}
+		}
+		System.out.println("Checks passed");
+
+		List<String> lines = createOutput(homeCount);
+		long nanos = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long started = System.nanoTime();
+			if (parser.parse(lines).size() != homeCount)
+				throw new IllegalStateException("Expected " + homeCount + " homes");
+			nanos += System.nanoTime() - started;
+		}
+
+		double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1) / MEASURED_ROUNDS;
+		System.out.println(String.format("%d homes (%d lines) parsed in %.1f ms, %.0f homes/s",
+				homeCount, lines.size(), seconds * 1000, homeCount / seconds));
+	}
+
+
+	private static List<String> readRecordedOutput() throws Exception {
+
+		InputStream stream = RegQueryParserBenchmark.class.getResourceAsStream(RECORDED_OUTPUT);
+		if (stream == null)
+			throw new IllegalStateException(RECORDED_OUTPUT + " isn't on the class path");
+
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				lines.add(line);
+		}
+		return lines;
+	}
+
+
+	//both views, every home in each
+	private static List<String> createOutput(int homeCount) {
+
+		List<String> lines = new ArrayList<>();
+		for (String view : new String[] {"HKEY_LOCAL_MACHINE\\SOFTWARE\\WOW6432Node\\ORACLE", "HKEY_LOCAL_MACHINE\\SOFTWARE\\ORACLE"}) {
+			lines.add("");
+			for (int i = 0; i < homeCount; i++) {
+				lines.add(view + "\\KEY_OraClient" + i + "_home1");
+				lines.add("    ORACLE_HOME    REG_SZ    C:\\oracle\\product\\19.0.0\\client_" + i);
+				lines.add("");
+			}
+			lines.add("End of search: " + homeCount + " match(es) found.");
+		}
+		return lines;
+	}
+
+
+	private static void check(Map<String, List<String>> parsed, Map<String, List<String>> expected, String what) {
+		if (!parsed.equals(expected) || !new ArrayList<>(parsed.keySet()).equals(new ArrayList<>(expected.keySet())))
+			throw new IllegalStateException("Check failed for the " + what + ": got " + parsed + ", expected " + expected);
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.benchmarks;
+
+import com.citybyweather.TNSNamesSync.enums.AliasOrder;
+import com.citybyweather.TNSNamesSync.enums.DuplicatePolicy;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsEntry;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesCompactor;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesError;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesIndex;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesListener;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares a tnsnames.ora with its compact form: the size of each, and the time a lookup takes when the file is
+ * read from the top until the alias turns up, which is what an Oracle client does on every connect.
+ *
+ * The lookups follow a skewed workload (a few aliases are looked up far more often than the rest),
+ * and the compact file is also measured with its entries ordered by that workload's frequencies.
+ *
+ * Run with: java -cp TNSNamesSync.jar com.citybyweather.TNSNamesSync.benchmarks.TnsNamesCompactBenchmark [tnsnames.ora]
+ * Without a file, one with 2000 commented entries (and a few duplicates) is generated.
+ */
+public class TnsNamesCompactBenchmark {
+
+	private static final int GENERATED_ENTRIES = 2000;
+	private static final int LOOKUPS = 300;
+	private static final int WARMUP_ROUNDS = 1;
+	private static final int MEASURED_ROUNDS = 3;
+	private static final long SEED = 42;
+
+
+	//thrown by the lookup listener to stop reading once the alias is found
+	private static class Found extends RuntimeException {
+		private static final long serialVersionUID = 42L;
+
+		private Found() {
+			super(null, null, false, false);
+		}
+	}
+
+
+	public static void main(String[] args) throws IOException {
+
+		String original = args.length > 0
+				? new String(Files.readAllBytes(Paths.get(args[0])), TnsNamesIndex.CHARSET) : generate();
+		TnsNamesIndex index = TnsNamesIndex.build(new StringReader(original));
+
+		List<String> workload = workload(index);
+		Map<String, Long> frequencies = new HashMap<>();
+		for (String alias : workload)
+			frequencies.merge(TnsNamesIndex.normalize(alias), 1L, Long::sum);
+
+		String compact = new TnsNamesCompactor(DuplicatePolicy.FIRST_WINS, AliasOrder.SOURCE, null)
+				.compact(index).getText();
+		String byFrequency = new TnsNamesCompactor(DuplicatePolicy.FIRST_WINS, AliasOrder.FREQUENCY, frequencies)
+				.compact(index).getText();
+
+		System.out.println("version                size (KB)  lookup (us)");
+		report("original", original, workload);
+		report("compact", compact, workload);
+		report("compact, by frequency", byFrequency, workload);
+	}
+
+
+	private static void report(String name, String text, List<String> workload) throws IOException {
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+			lookUpAll(text, workload);
+
+		long nanos = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long started = System.nanoTime();
+			lookUpAll(text, workload);
+			nanos += System.nanoTime() - started;
+		}
+
+		double micros = nanos / (double) TimeUnit.MICROSECONDS.toNanos(1) / MEASURED_ROUNDS / workload.size();
+		System.out.println(String.format("%-21s  %9d  %11.1f", name, text.length() / 1024, micros));
+	}
+
+
+	private static void lookUpAll(String text, List<String> workload) throws IOException {
+		for (String alias : workload) {
+			if (!lookUp(text, alias))
+				throw new IllegalStateException("alias not found: " + alias);
+		}
+	}
+
+
+	//reads the file from the top until the alias is found, the same as an Oracle client does
+	private static Boolean lookUp(String text, String alias) throws IOException {
+
+		try {
+			TnsNamesParser.parse(new StringReader(text), new TnsNamesListener() {
+				@Override
+				public void entry(TnsEntry entry) {
+					for (String entryAlias : entry.getAliases()) {
+						if (entryAlias.equalsIgnoreCase(alias))
+							throw new Found();
+					}
+				}
+
+				@Override
+				public void error(TnsNamesError error) {}
+			});
+		} catch (Found found) {
+			return true;
+		}
+
+		return false;
+	}
+
+
+	//every alias gets a random rank, and is looked up about 1/rank as often as the most used one
+	private static List<String> workload(TnsNamesIndex index) {
+
+		List<String> aliases = new ArrayList<>();
+		for (TnsEntry entry : index.getEntries()) {
+			if (index.lookup(entry.getAliases().get(0)) == entry)
+				aliases.add(entry.getAliases().get(0));
+		}
+
+		Random random = new Random(SEED);
+		Collections.shuffle(aliases, random);
+
+		double[] cumulative = new double[aliases.size()];
+		double total = 0;
+		for (int i = 0; i < aliases.size(); i++)
+			cumulative[i] = total += 1.0 / (i + 1);
+
+		List<String> workload = new ArrayList<>(LOOKUPS);
+		for (int i = 0; i < LOOKUPS; i++) {
+			int position = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+			workload.add(aliases.get(position >= 0 ? position : -position - 1));
+		}
+
+		return workload;
+	}
+
+
+	//like a typical master file: comments, multi-line descriptors, and every 50th entry defined twice
+	private static String generate() {
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < GENERATED_ENTRIES; i++) {
+			int db = i % 50 == 49 ? i - 1 : i;
+			text.append("# database ").append(db).append(", maintained by the DBA team\n");
+			text.append("DB").append(db).append(", DB").append(db).append(".WORLD =\n");
+			text.append("  (DESCRIPTION =\n");
+			text.append("    (ADDRESS = (PROTOCOL = TCP)(HOST = db").append(db).append(".example.com)(PORT = 1521))\n");
+			text.append("    (CONNECT_DATA = (SERVER = DEDICATED)(SERVICE_NAME = svc").append(db).append("))\n");
+			text.append("  )\n\n");
+		}
+
+		return text.toString();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.benchmarks;
+
+import com.citybyweather.TNSNamesSync.tnsnames.TnsEntry;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesError;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesIndex;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesListener;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Parses generated tnsnames.ora files of 1k, 10k and 100k aliases, both streaming only (counting the entries)
+ * and building the full alias index, and prints the time taken and the heap the index holds on to.
+ *
+ * Run with: java -cp TNSNamesSync.jar com.citybyweather.TNSNamesSync.benchmarks.TnsNamesParserBenchmark
+ */
+public class TnsNamesParserBenchmark {
+
+	private static final int[] ALIAS_COUNTS = {1000, 10000, 100000};
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+
+
+	public static void main(String[] args) throws IOException {
+
+		System.out.println("aliases   file (KB)  stream (ms)  index (ms)  index heap (KB)");
+
+		for (int aliasCount : ALIAS_COUNTS) {
+
+			Path file = Files.createTempFile("tnsnames-benchmark", ".ora");
+			try {
+				generate(file, aliasCount);
+
+				for (int i = 0; i < WARMUP_ROUNDS; i++) {
+					stream(file);
+					TnsNamesIndex.build(file);
+				}
+
+				long streamNanos = 0, indexNanos = 0;
+				for (int i = 0; i < MEASURED_ROUNDS; i++) {
+
+					long started = System.nanoTime();
+					stream(file);
+					streamNanos += System.nanoTime() - started;
+
+					started = System.nanoTime();
+					TnsNamesIndex.build(file);
+					indexNanos += System.nanoTime() - started;
+				}
+
+				long heapBefore = usedHeap();
+				TnsNamesIndex index = TnsNamesIndex.build(file);
+				long heapAfter = usedHeap();
+				if (index.getAliasCount() != aliasCount * 2)
+					throw new IllegalStateException("expected " + aliasCount * 2 + " aliases, got " + index.getAliasCount());
+
+				System.out.println(String.format("%7d  %10d  %11.1f  %10.1f  %15d", aliasCount, Files.size(file) / 1024,
+						toMillis(streamNanos) / MEASURED_ROUNDS, toMillis(indexNanos) / MEASURED_ROUNDS,
+						(heapAfter - heapBefore) / 1024));
+
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+
+	private static int stream(Path file) throws IOException {
+
+		final int[] count = {0};
+		try (BufferedReader reader = Files.newBufferedReader(file, TnsNamesIndex.CHARSET)) {
+			TnsNamesParser.parse(reader, new TnsNamesListener() {
+				@Override
+				public void entry(TnsEntry entry) {
+					count[0]++;
+				}
+
+				@Override
+				public void error(TnsNamesError error) {
+					throw new IllegalStateException(error.toString());
+				}
+			});
+		}
+
+		return count[0];
+	}
+
+
+	//every entry has two aliases, a comment and a multi-line descriptor, like a typical master file
+	private static void generate(Path file, int aliasCount) throws IOException {
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file, TnsNamesIndex.CHARSET)) {
+			for (int i = 0; i < aliasCount; i++) {
+				writer.write("# database " + i + "\n");
+				writer.write("DB" + i + ", DB" + i + ".WORLD =\n");
+				writer.write("  (DESCRIPTION =\n");
+				writer.write("    (ADDRESS = (PROTOCOL = TCP)(HOST = db" + i + ".example.com)(PORT = 1521))\n");
+				writer.write("    (CONNECT_DATA = (SERVER = DEDICATED)(SERVICE_NAME = svc" + i + "))\n");
+				writer.write("  )\n\n");
+			}
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
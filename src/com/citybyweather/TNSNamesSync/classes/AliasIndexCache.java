@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesIndex;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesIndexFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * The central cache of alias index files, one per distinct tnsnames.ora content, named after the content hash.
+ * When a tnsnames.ora changes, its hash changes with it, so an index can never be used for content it wasn't
+ * built from; the index for the new content is built the first time it's needed.
+ *
+ * Only the most recently written indexes are kept, so the cache doesn't grow with every edit of the master file.
+ */
+public class AliasIndexCache {
+
+	private static final String INDEX_FILE_EXTENSION = ".idx";
+	private static final int MAX_INDEX_FILES = 100;
+
+	private final Path cacheDir;
+	private int built = 0;
+
+
+	public AliasIndexCache(Path cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+
+	/**
+	 *
+	 * @param hash  hash of the tnsnames.ora content
+	 * @return      the index for that content, or null if it hasn't been built yet
+	 * @throws IOException
+	 */
+	public TnsNamesIndexFile get(String hash) throws IOException {
+		return TnsNamesIndexFile.open(this.indexPath(hash), hash);
+	}
+
+
+	/**
+	 *
+	 * @param tnsnamesPath  the tnsnames.ora
+	 * @param hash          hash of its content
+	 * @return              the index for that content, built from the file if it's not in the cache yet
+	 * @throws IOException
+	 */
+	public TnsNamesIndexFile getOrBuild(Path tnsnamesPath, String hash) throws IOException {
+
+		TnsNamesIndexFile indexFile = this.get(hash);
+		if (indexFile != null)
+			return indexFile;
+
+		this.store(hash, TnsNamesIndex.build(tnsnamesPath));
+		return this.get(hash);
+	}
+
+
+	/**
+	 * Writes the index for the content, unless it's already in the cache
+	 */
+	public void store(String hash, TnsNamesIndex index) throws IOException {
+
+		if (this.get(hash) != null)
+			return;
+
+		TnsNamesIndexFile.write(this.indexPath(hash), index, hash);
+		this.built++;
+		this.prune();
+	}
+
+
+	//removes the oldest index files once there are more than MAX_INDEX_FILES
+	private void prune() throws IOException {
+
+		List<Path> indexFiles = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.cacheDir, "*" + INDEX_FILE_EXTENSION)) {
+			for (Path file : files)
+				indexFiles.add(file);
+		}
+
+		if (indexFiles.size() <= MAX_INDEX_FILES)
+			return;
+
+		indexFiles.sort(Comparator.comparing(AliasIndexCache::lastModifiedMillis).reversed());
+		for (Path file : indexFiles.subList(MAX_INDEX_FILES, indexFiles.size())) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				//still mapped by someone (Windows won't delete it then); it goes next time
+			}
+		}
+	}
+
+
+	private static long lastModifiedMillis(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+
+	private Path indexPath(String hash) {
+		return this.cacheDir.resolve(hash + INDEX_FILE_EXTENSION);
+	}
+
+
+	//how many index files this cache has written
+	public int getBuilt() {
+		return this.built;
+	}
+}
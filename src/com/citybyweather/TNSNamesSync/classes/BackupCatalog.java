@@ -0,0 +1,359 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Lists every backup taken, so that pruning and restoring never have to list the network\admin dirs
+ * and parse backup file names. Backups are appended as they're taken; pruning rewrites the catalog.
+ *
+ * The catalog is a tab separated text file, one backup per line:
+ *	timestamp, destination path, backup path, content hash, size
+ */
+public class BackupCatalog {
+
+	public static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	private final Path catalogPath;
+	private final List<Entry> entries = new ArrayList<>();
+	private final Map<String, List<Entry>> byDestination = new HashMap<>();
+	private BufferedWriter writer;
+
+
+	public BackupCatalog(Path catalogPath) {
+		this.catalogPath = catalogPath;
+	}
+
+
+	public synchronized void open() throws IOException {
+
+		this.entries.clear();
+		this.byDestination.clear();
+
+		if (Files.exists(this.catalogPath)) {
+			for (String line : Files.readAllLines(this.catalogPath, StandardCharsets.UTF_8)) {
+				Entry entry = Entry.parse(line);
+				if (entry != null)
+					this.add(entry);
+			}
+		} else
+			Files.createDirectories(this.catalogPath.getParent());
+
+		this.writer = Files.newBufferedWriter(this.catalogPath, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+	}
+
+	public synchronized void close() throws IOException {
+		if (this.writer != null) {
+			this.writer.close();
+			this.writer = null;
+		}
+	}
+
+
+	/**
+	 *
+	 * @param timeStamp     when the backup was taken, in TIMESTAMP_FORMAT
+	 * @param destination   the file that was backed up
+	 * @param backupPath    where the backup is
+	 * @param hash          hash of the backed up content
+	 */
+	public synchronized void record(String timeStamp, Path destination, Path backupPath, String hash) throws IOException {
+
+		Entry entry = new Entry(timeStamp, destination.toString(), backupPath.toString(), hash, Files.size(backupPath));
+		this.add(entry);
+
+		this.writer.write(entry.toLine());
+		this.writer.newLine();
+		this.writer.flush();
+	}
+
+
+	/**
+	 *
+	 * @param destination   the destination file
+	 * @return              its backups, newest first
+	 */
+	public synchronized List<Entry> getBackups(Path destination) {
+
+		List<Entry> backups = this.byDestination.get(destination.toString());
+		if (backups == null)
+			return new ArrayList<>();
+
+		backups = new ArrayList<>(backups);
+		backups.sort(Entry.NEWEST_FIRST);
+		return backups;
+	}
+
+
+	/**
+	 *
+	 * @param destination   the destination file
+	 * @param timeStamp     in TIMESTAMP_FORMAT, or null for the newest backup
+	 * @return              the newest backup of the destination taken at or before the timestamp
+	 *                      whose file still exists, or null if there's none
+	 */
+	public Entry find(Path destination, String timeStamp) {
+
+		for (Entry entry : this.getBackups(destination)) {
+			if (timeStamp != null && entry.timeStamp.compareTo(timeStamp) > 0)
+				continue;
+
+			if (Files.exists(Paths.get(entry.backupPath)))
+				return entry;
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Deletes the backups the policy doesn't keep and rewrites the catalog without them.
+	 * A backup file shared by several entries (a store blob) is only deleted once no kept entry refers to it.
+	 *
+	 * @return  how many files and bytes were reclaimed
+	 */
+	public synchronized PruneResult prune(RetentionPolicy policy) throws IOException {
+
+		PruneResult result = new PruneResult();
+		if (!policy.isEnabled())
+			return result;
+
+		LocalDateTime keepAfter = policy.getKeepDays() == null ? null : LocalDateTime.now().minusDays(policy.getKeepDays());
+
+		Set<Entry> keptEntries = new HashSet<>();
+		List<Entry> dropped = new ArrayList<>();
+		for (List<Entry> destinationBackups : this.byDestination.values()) {
+
+			List<Entry> backups = new ArrayList<>(destinationBackups);
+			backups.sort(Entry.NEWEST_FIRST);
+			Set<String> contentSeen = new HashSet<>();
+
+			for (int i = 0; i < backups.size(); i++) {
+
+				Entry entry = backups.get(i);
+				Boolean keep = policy.getKeepLast() != null && i < policy.getKeepLast();
+				keep |= keepAfter != null && entry.isAfter(keepAfter);
+				keep |= contentSeen.add(entry.hash) && policy.getKeepOnePerContent();
+
+				if (keep)
+					keptEntries.add(entry);
+				else
+					dropped.add(entry);
+			}
+		}
+
+		if (dropped.isEmpty())
+			return result;
+
+		List<Entry> kept = new ArrayList<>();
+		for (Entry entry : this.entries) {
+			if (keptEntries.contains(entry))
+				kept.add(entry);
+		}
+
+		//the catalog goes first: a backup missing from the catalog is harmless, a catalog entry without a file isn't
+		this.rewrite(kept);
+
+		Set<String> stillReferenced = new HashSet<>();
+		for (Entry entry : kept)
+			stillReferenced.add(entry.backupPath);
+
+		for (Entry entry : dropped) {
+			if (stillReferenced.contains(entry.backupPath))
+				continue;
+
+			Path backupPath = Paths.get(entry.backupPath);
+			try {
+				long size = Files.exists(backupPath) ? Files.size(backupPath) : 0;
+				if (Files.deleteIfExists(backupPath))
+					result.add(size);
+
+			} catch (IOException e) {
+				System.out.println("Could not delete backup [" + backupPath + "]: " + e.getMessage());
+			}
+
+			//the same blob may be listed more than once
+			stillReferenced.add(entry.backupPath);
+		}
+
+		return result;
+	}
+
+
+	private void rewrite(List<Entry> kept) throws IOException {
+
+		this.close();
+
+		Path tempPath = this.catalogPath.resolveSibling(this.catalogPath.getFileName() + TEMP_FILE_EXTENSION);
+		try (BufferedWriter tempWriter = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+				StandardOpenOption.SYNC)) {
+
+			for (Entry entry : kept) {
+				tempWriter.write(entry.toLine());
+				tempWriter.newLine();
+			}
+		}
+
+		try {
+			Files.move(tempPath, this.catalogPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempPath, this.catalogPath, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		this.entries.clear();
+		this.byDestination.clear();
+		for (Entry entry : kept)
+			this.add(entry);
+
+		this.writer = Files.newBufferedWriter(this.catalogPath, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+	}
+
+	private void add(Entry entry) {
+		this.entries.add(entry);
+
+		List<Entry> backups = this.byDestination.get(entry.destination);
+		if (backups == null) {
+			backups = new ArrayList<>();
+			this.byDestination.put(entry.destination, backups);
+		}
+		backups.add(entry);
+	}
+
+
+
+	public static class Entry {
+
+		//the timestamp format sorts chronologically as text
+		static final Comparator<Entry> NEWEST_FIRST = Comparator.comparing((Entry entry) -> entry.timeStamp).reversed();
+
+		private final String timeStamp;
+		private final String destination;
+		private final String backupPath;
+		private final String hash;
+		private final long size;
+
+		Entry(String timeStamp, String destination, String backupPath, String hash, long size) {
+			this.timeStamp = timeStamp;
+			this.destination = destination;
+			this.backupPath = backupPath;
+			this.hash = hash;
+			this.size = size;
+		}
+
+		static Entry parse(String line) {
+
+			String[] fields = line.split(FIELD_SEPARATOR);
+			if (fields.length != 5)
+				return null;
+
+			try {
+				return new Entry(fields[0], fields[1], fields[2], fields[3], Long.parseLong(fields[4]));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		String toLine() {
+			return this.timeStamp + FIELD_SEPARATOR + this.destination + FIELD_SEPARATOR + this.backupPath
+					+ FIELD_SEPARATOR + this.hash + FIELD_SEPARATOR + this.size;
+		}
+
+		Boolean isAfter(LocalDateTime dateTime) {
+			try {
+				return LocalDateTime.parse(this.timeStamp, TIMESTAMP_FORMAT).isAfter(dateTime);
+			} catch (DateTimeParseException e) {
+				//keep what we can't date
+				return true;
+			}
+		}
+
+		public String getTimeStamp() {
+			return this.timeStamp;
+		}
+
+		public String getDestination() {
+			return this.destination;
+		}
+
+		public String getBackupPath() {
+			return this.backupPath;
+		}
+
+		public String getHash() {
+			return this.hash;
+		}
+
+		public long getSize() {
+			return this.size;
+		}
+	}
+
+
+
+	public static class PruneResult {
+
+		private int files = 0;
+		private long bytes = 0;
+
+		void add(long size) {
+			this.files++;
+			this.bytes += size;
+		}
+
+		public int getFiles() {
+			return this.files;
+		}
+
+		public long getBytes() {
+			return this.bytes;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+
+/**
+ * Keeps backups by content instead of by destination: every distinct content is stored once, as a blob named
+ * after its hash, under blobs\ab\abcdef... (sharded by the first two hash characters).
+ * Which destination had which content at which time is recorded in the backup catalog, so backing up content
+ * that's already in the store costs a hash, a check that its blob is there, plus one catalog line.
+ */
+public class BackupStore {
+
+	private static final String BLOBS_DIR_NAME = "blobs";
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	private final Path storeDir;
+	private final Path blobsDir;
+
+
+	/**
+	 *
+	 * @param storeDir  the dir the blobs are kept under
+	 */
+	public BackupStore(Path storeDir) {
+		this.storeDir = storeDir;
+		this.blobsDir = storeDir.resolve(BLOBS_DIR_NAME);
+	}
+
+
+	public void open() throws IOException {
+		Files.createDirectories(this.blobsDir);
+	}
+
+
+	/**
+	 *
+	 * @param destination   the live file to back up
+	 * @param knownHash     the hash of the live file if it's already known (e.g. from the sync ledger),
+	 *                      otherwise null and the file is hashed here
+	 * @param mayLink       true if the live file will be replaced by a rename rather than overwritten in place;
+	 *                      only then can a new blob be a hard link to it instead of a copy
+	 * @return              the path of the blob holding the backup; its file name is the content hash
+	 * @throws IOException
+	 */
+	public Path store(Path destination, String knownHash, Boolean mayLink) throws IOException {
+
+		String hash = knownHash != null ? knownHash : ContentHash.of(destination);
+		Path blob = this.getBlobPath(hash);
+
+		//a blob the catalog lists may have been deleted since (by hand, or by a prune cut short), so only the file counts
+		if (!Files.exists(blob))
+			this.addBlob(destination, blob, mayLink);
+
+		return blob;
+	}
+
+
+	public Path getBlobPath(String hash) {
+		return this.blobsDir.resolve(hash.substring(0, 2)).resolve(hash);
+	}
+
+	public Path getStoreDir() {
+		return this.storeDir;
+	}
+
+
+	private void addBlob(Path destination, Path blob, Boolean mayLink) throws IOException {
+
+		Files.createDirectories(blob.getParent());
+
+		if (mayLink) {
+			try {
+				Files.createLink(blob, destination);
+				return;
+			} catch (FileAlreadyExistsException e) {
+				return;
+			} catch (UnsupportedOperationException | IOException e) {
+				//e.g. the store is on another volume; fall back to a copy
+			}
+		}
+
+		//copy under a temp name first, so a blob is never seen half written
+		Path tempPath = Files.createTempFile(blob.getParent(), blob.getFileName().toString(), TEMP_FILE_EXTENSION);
+		try {
+			Files.copy(destination, tempPath, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tempPath, blob, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException e) {
+			//another copy stored the same content first
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+}
@@ -26,21 +26,37 @@ package com.citybyweather.TNSNamesSync.classes;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 
+/**
+ * Runs a command and collects the lines it prints. Both output streams are drained while it runs, and it's killed
+ * (with the processes it started) if it doesn't finish within the timeout
+ */
 //@SuppressWarnings("unused")
-class Command {
+public class Command {
+
+	private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
 
 	private String[] cmd;
 
 	private Process p;
-	private String outputPatternToMatch;
+	private Pattern outputPatternToMatch;
+	private Boolean distinct = true;
+	private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private int exitValue = 0;
+
 	//@SuppressWarnings("CanBeFinal")
 	private List<String> resultingArray = new ArrayList<>();
+	private final List<String> errorOutput = new ArrayList<>();
 
 
 	public Command() {  }
@@ -59,23 +75,104 @@ class Command {
 
 	public Command(String cmd, String outputPatternToMatch) {
 		this(cmd);
-		this.outputPatternToMatch = outputPatternToMatch;
+		this.setOutputPatternToMatch(outputPatternToMatch);
 	}
 
 	public Command(String[] cmd, String outputPatternToMatch) {
 		this(cmd);
-		this.outputPatternToMatch = outputPatternToMatch;
+		this.setOutputPatternToMatch(outputPatternToMatch);
 	}
 
 	public List<String> execute() throws InterruptedException, IOException {
-		this.p = Runtime.getRuntime().exec(this.cmd);
-		this.p.waitFor();
-		this.parseOutput();
 
+		//an insertion-ordered set keeps the output order and makes the duplicate check cheap
+		final Collection<String> collected = this.distinct ? new LinkedHashSet<>() : new ArrayList<>();
+
+		this.run(collected::add);
+
+		this.resultingArray = new ArrayList<>(collected);
 		return  this.resultingArray;
 	}
 
 
+	/**
+	 *
+	 * @param lineConsumer  receives each matching (and, if distinct, not yet seen) line as soon as it is read.
+	 *                      It's called from the thread draining the output, not from the caller's thread
+	 * @throws InterruptedException
+	 * @throws IOException  also thrown when the command doesn't finish within the timeout
+	 */
+	public void execute(Consumer<String> lineConsumer) throws InterruptedException, IOException {
+
+		final Collection<String> seen = new LinkedHashSet<>();
+
+		this.run(line -> {
+			if (!this.distinct || seen.add(line))
+				lineConsumer.accept(line);
+		});
+	}
+
+
+	private void run(Consumer<String> lineConsumer) throws InterruptedException, IOException {
+
+		this.errorOutput.clear();
+		this.p = new ProcessBuilder(this.cmd).start();
+
+		//both streams are drained while the process runs; a full stderr pipe would otherwise block it forever
+		final Pattern pattern = this.outputPatternToMatch;
+		StreamDrainer stdoutDrainer = new StreamDrainer(this.p.getInputStream(), line -> {
+			if (pattern == null || pattern.matcher(line).matches())  //if matching is defined, do matching
+				lineConsumer.accept(line);
+		});
+		StreamDrainer stderrDrainer = new StreamDrainer(this.p.getErrorStream(), line -> {
+			synchronized (this.errorOutput) {
+				this.errorOutput.add(line);
+			}
+		});
+		stdoutDrainer.start();
+		stderrDrainer.start();
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+		try {
+			if (!this.p.waitFor(this.timeoutMillis, TimeUnit.MILLISECONDS))
+				throw this.timedOut();
+
+			/*
+				A grandchild (e.g. started by cmd /c or sh -c) that inherited the pipes keeps them open after the
+				process itself is gone, so the output is only waited for until the same deadline
+			*/
+			stdoutDrainer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			stderrDrainer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			if (stdoutDrainer.isAlive() || stderrDrainer.isAlive())
+				throw this.timedOut();
+
+		} catch (InterruptedException e) {
+			this.destroyProcessTree();
+			throw e;
+		}
+
+		this.exitValue = this.p.exitValue();
+
+		if (stdoutDrainer.getFailure() != null)
+			throw stdoutDrainer.getFailure();
+	}
+
+
+	private IOException timedOut() {
+
+		this.destroyProcessTree();
+		return new IOException("Command did not finish within " + this.timeoutMillis + " ms: "
+				+ String.join(" ", this.cmd));
+	}
+
+	//cmd.exe starts reg.exe as a child, so killing cmd.exe alone would leave reg.exe running
+	private void destroyProcessTree() {
+
+		this.p.descendants().forEach(ProcessHandle::destroyForcibly);
+		this.p.destroyForcibly();
+	}
+
+
 	public void setCmd(String cmd) {
 		this.cmd = new String[] {cmd};
 	}
@@ -89,32 +186,64 @@ class Command {
 		return this.resultingArray;
 	}
 
-	public void setOutputPatternToMatch(String outputPatternToMatch) {
-		this.outputPatternToMatch = outputPatternToMatch;
+	public List<String> getErrorOutput() {
+		synchronized (this.errorOutput) {
+			return new ArrayList<>(this.errorOutput);
+		}
 	}
 
-	private void parseOutput() throws IOException {
+	//of the last run
+	public int getExitValue() {
+		return this.exitValue;
+	}
 
-		String commandOutputLine;
+	public void setOutputPatternToMatch(String outputPatternToMatch) {
+		this.outputPatternToMatch = outputPatternToMatch == null ? null : Pattern.compile(outputPatternToMatch);
+	}
 
-		BufferedReader reader = new BufferedReader(new InputStreamReader(this.p.getInputStream()));
+	//parsers that rely on the order and context of the lines need the duplicates as well
+	public void setDistinct(Boolean distinct) {
+		this.distinct = distinct;
+	}
+
+	public void setTimeout(long timeout, TimeUnit unit) {
+		this.timeoutMillis = unit.toMillis(timeout);
+	}
 
 
-		while ((commandOutputLine = reader.readLine()) != null) {
 
-			commandOutputLine = commandOutputLine.trim();
-			if (this.resultingArray.contains(commandOutputLine)) //exclude duplicates
-				continue;
+	/**
+	 * Reads a process stream line by line on its own thread, passing each trimmed line on
+	 */
+	private static class StreamDrainer extends Thread {
 
-			if (this.outputPatternToMatch != null) { //if matching is defined, do matching
-				if (Pattern.matches(outputPatternToMatch, commandOutputLine))
-					this.resultingArray.add(commandOutputLine);
-			} else
-				this.resultingArray.add(commandOutputLine);
+		private final InputStream stream;
+		private final Consumer<String> lineConsumer;
+		private IOException failure;
 
+		StreamDrainer(InputStream stream, Consumer<String> lineConsumer) {
+			this.stream = stream;
+			this.lineConsumer = lineConsumer;
+			this.setDaemon(true);
 		}
-	}
 
+		@Override
+		public void run() {
+
+			String commandOutputLine;
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(this.stream))) {
+				while ((commandOutputLine = reader.readLine()) != null)
+					this.lineConsumer.accept(commandOutputLine.trim());
 
+			} catch (IOException e) {
+				this.failure = e;
+			}
+		}
+
+		IOException getFailure() {
+			return this.failure;
+		}
+	}
 
 }
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesMerger;
+
+import java.nio.file.Path;
+
+
+/**
+ * What a single copy (or merge, or restore) of a SimpleFile did to its destination. Each copy returns
+ * its own result instead of leaving it on the SimpleFile, so one SimpleFile can be copied by many threads at once.
+ */
+public final class CopyResult {
+
+	private final Path destination;
+	private final Path backupPath;
+	private final long bytes;
+	private final long durationNanos;
+	private final Boolean skipped;
+	private final TnsNamesMerger.MergeResult mergeResult;
+
+
+	/**
+	 *
+	 * @param destination    the destination file
+	 * @param backupPath     where the destination was backed up to, null if it wasn't
+	 * @param bytes          how many bytes were written to the destination, 0 if it was skipped
+	 * @param durationNanos  how long the copy took
+	 * @param skipped        true if the destination already had the content and was left alone
+	 * @param mergeResult    what the merge did, null unless the file was merged
+	 */
+	public CopyResult(Path destination, Path backupPath, long bytes, long durationNanos, Boolean skipped,
+	                  TnsNamesMerger.MergeResult mergeResult) {
+		this.destination = destination;
+		this.backupPath = backupPath;
+		this.bytes = bytes;
+		this.durationNanos = durationNanos;
+		this.skipped = skipped;
+		this.mergeResult = mergeResult;
+	}
+
+
+	//the same result, for a merge
+	CopyResult withMergeResult(TnsNamesMerger.MergeResult mergeResult) {
+		return new CopyResult(this.destination, this.backupPath, this.bytes, this.durationNanos, this.skipped, mergeResult);
+	}
+
+
+	public Path getDestination() {
+		return this.destination;
+	}
+
+	public Path getBackupPath() {
+		return this.backupPath;
+	}
+
+	public Boolean isBackedUp() {
+		return this.backupPath != null;
+	}
+
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	public long getDurationNanos() {
+		return this.durationNanos;
+	}
+
+	public Boolean isSkipped() {
+		return this.skipped;
+	}
+
+	public Boolean isCopied() {
+		return !this.skipped;
+	}
+
+	public TnsNamesMerger.MergeResult getMergeResult() {
+		return this.mergeResult;
+	}
+}
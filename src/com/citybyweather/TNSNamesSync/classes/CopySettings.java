@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+
+/**
+ * How SimpleFile.copy should treat each destination. One instance is set up before the copies start
+ * and is then only read, so it can be shared by concurrent copies.
+ */
+public class CopySettings {
+
+	private Boolean createBackup = true;
+	private Boolean onlyIfDifferent = false;
+	private Boolean atomic = false;
+	private Boolean merge = false;
+	private SyncLedger ledger;
+	private BackupStore backupStore;
+	private BackupCatalog backupCatalog;
+	private DestinationListings destinationListings;
+	private RunJournal journal;
+	private DirectoryLocks directoryLocks;
+
+
+	public CopySettings() {}
+
+
+	public Boolean getCreateBackup() {
+		return this.createBackup;
+	}
+
+	public void setCreateBackup(Boolean createBackup) {
+		this.createBackup = createBackup;
+	}
+
+	public Boolean getOnlyIfDifferent() {
+		return this.onlyIfDifferent;
+	}
+
+	//leave the destination alone (no backup, no write) when it already has the same content
+	public void setOnlyIfDifferent(Boolean onlyIfDifferent) {
+		this.onlyIfDifferent = onlyIfDifferent;
+	}
+
+	public Boolean getAtomic() {
+		return this.atomic;
+	}
+
+	//stage the new content next to the destination and rename it into place, instead of overwriting in place
+	public void setAtomic(Boolean atomic) {
+		this.atomic = atomic;
+	}
+
+	public Boolean getMerge() {
+		return this.merge;
+	}
+
+	//merge tnsnames.ora alias by alias, keeping the destination's local entries, instead of overwriting it
+	public void setMerge(Boolean merge) {
+		this.merge = merge;
+	}
+
+	public SyncLedger getLedger() {
+		return this.ledger;
+	}
+
+	//null when no ledger is used
+	public void setLedger(SyncLedger ledger) {
+		this.ledger = ledger;
+	}
+
+	public BackupStore getBackupStore() {
+		return this.backupStore;
+	}
+
+	//when set, backups go into the content addressed store instead of .bak files next to the destination
+	public void setBackupStore(BackupStore backupStore) {
+		this.backupStore = backupStore;
+	}
+
+	public BackupCatalog getBackupCatalog() {
+		return this.backupCatalog;
+	}
+
+	//every backup taken is recorded here; null if there's no catalog
+	public void setBackupCatalog(BackupCatalog backupCatalog) {
+		this.backupCatalog = backupCatalog;
+	}
+
+	public DestinationListings getDestinationListings() {
+		return this.destinationListings;
+	}
+
+	//when set, destinations are compared from one listing per destination dir instead of stat'ing each file
+	public void setDestinationListings(DestinationListings destinationListings) {
+		this.destinationListings = destinationListings;
+	}
+
+	public RunJournal getJournal() {
+		return this.journal;
+	}
+
+	//every step of every copy is journaled here, so an interrupted run can be resumed; null when there's no journal
+	public void setJournal(RunJournal journal) {
+		this.journal = journal;
+	}
+
+	public DirectoryLocks getDirectoryLocks() {
+		return this.directoryLocks;
+	}
+
+	//every destination dir is locked while it's written into, so runs don't collide; null to not lock
+	public void setDirectoryLocks(DirectoryLocks directoryLocks) {
+		this.directoryLocks = directoryLocks;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import com.citybyweather.TNSNamesSync.enums.FileNames;
+import com.citybyweather.TNSNamesSync.exceptions.InvalidDestinationFileException;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesMerger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+
+
+/**
+ * One unit of copy work: a single file into a single TNS path of an Oracle home.
+ * The task returns the lines it would have printed, so that the caller can print them
+ * in a deterministic order no matter in which order the tasks actually finished.
+ */
+public class CopyTask implements Callable<String> {
+
+	private final SimpleFile file;
+	private final String tnsPath;
+	private final CopySettings settings;
+	private long startedNanos = 0;
+	private long durationNanos = 0;
+	private Boolean copied = false;
+	private Boolean skipped = false;
+	private Boolean resumed = false;
+	private Boolean locked = false;
+	private CopyResult result;
+
+
+	/**
+	 *
+	 * @param file      the file to copy; the same instance can be shared by any number of tasks
+	 * @param tnsPath   destination directory, including network\admin
+	 * @param settings  how to copy; shared by all of the tasks of a run
+	 */
+	public CopyTask(SimpleFile file, String tnsPath, CopySettings settings) {
+		this.file = file;
+		this.tnsPath = tnsPath;
+		this.settings = settings;
+	}
+
+
+	@Override
+	public String call() {
+
+		StringBuilder output = new StringBuilder();
+		long started = System.nanoTime();
+		this.startedNanos = started;
+		RunJournal journal = this.settings.getJournal();
+		String destination = Paths.get(this.tnsPath + this.file.getName()).toString();
+
+		try {
+			String sourceHash = journal != null ? this.file.getContent().getHash() : null;
+			if (journal != null && journal.isDone(destination, sourceHash)) {
+				this.skipped = true;
+				this.resumed = true;
+				output.append("- file done by the interrupted run, skipped:");
+				output.append(" [").append(this.file.getName()).append("] in [").append(this.tnsPath).append("]\n");
+				return output.toString();
+			}
+
+			//in most runs nothing changed, and a dir that won't be written doesn't need to be locked
+			this.result = this.isMerge() ? this.file.checkMergedUpToDate(this.tnsPath)
+					: this.file.checkUpToDate(this.tnsPath, this.settings);
+			if (this.result != null) {
+				if (journal != null)
+					journal.done(destination, sourceHash);
+			} else {
+				//another run writing into the same dir would back up and overwrite the same files
+				DirectoryLocks locks = this.settings.getDirectoryLocks();
+				if (locks != null && !locks.acquire(this.tnsPath)) {
+					this.locked = true;
+					output.append("- dir locked by another run, skipped:");
+					output.append(" [").append(this.file.getName()).append("] in [").append(this.tnsPath).append("]\n");
+					return output.toString();
+				}
+				//the copy checks again, another run may have written the file while this one waited for the lock
+				try {
+					this.copy(journal, destination, sourceHash);
+				} finally {
+					if (locks != null)
+						locks.release(this.tnsPath);
+				}
+			}
+
+			if (this.result.isSkipped()) {
+				this.skipped = true;
+				output.append("- file unchanged, skipped:");
+				output.append(" [").append(this.file.getName()).append("] in [").append(this.tnsPath).append("]\n");
+				return output.toString();
+			}
+
+			this.copied = true;
+			TnsNamesMerger.MergeResult mergeResult = this.result.getMergeResult();
+			output.append(mergeResult != null ? "- file merged:" : "- file copied:");
+			output.append(" [").append(this.file.getName()).append("] to [").append(this.tnsPath).append("]\n");
+			if (mergeResult != null) {
+				output.append("- aliases: ").append(mergeResult.getAdded()).append(" added, ");
+				output.append(mergeResult.getChanged()).append(" changed, ");
+				output.append(mergeResult.getRemoved()).append(" removed, ");
+				output.append(mergeResult.getLocal()).append(" local kept\n");
+				if (mergeResult.getRemoved() > 0)
+					output.append("- aliases removed: ").append(mergeResult.getRemovedAliases()).append("\n");
+			}
+			if (this.result.isBackedUp()) {
+				output.append("- backup created:");
+				output.append(" [").append(this.result.getBackupPath()).append("]\n");
+			}
+
+		} catch (InvalidDestinationFileException e) {
+			//the local entries that don't parse would be lost, so the file is left as it is
+			output.append("The ").append(this.file.getName()).append(" file in [").append(this.tnsPath);
+			output.append("] has errors, nothing was merged into it:\n").append(e.getMessage());
+
+		} catch (IOException e) {
+			output.append("Error occurred trying to copy ").append(this.file.getName());
+			output.append(" file into: [").append(this.tnsPath).append("]\n");
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			output.append("Interrupted waiting for the lock on [").append(this.tnsPath).append("]\n");
+
+		} finally {
+			this.durationNanos = System.nanoTime() - started;
+		}
+
+		return output.toString();
+	}
+
+
+	private void copy(RunJournal journal, String destination, String sourceHash) throws IOException {
+
+		if (journal != null)
+			journal.planned(destination, sourceHash);
+
+		if (this.isMerge())
+			this.result = this.file.merge(this.tnsPath, this.settings);
+		else
+			this.result = this.file.copy(this.tnsPath, this.settings);
+
+		if (journal != null)
+			journal.done(destination, sourceHash);
+	}
+
+
+	//only tnsnames.ora can be merged; everything else is always copied
+	private Boolean isMerge() {
+		return this.settings.getMerge() && FileNames.TNSNAMES.toString().equalsIgnoreCase(this.file.getName());
+	}
+
+
+	//null unless the file was merged
+	public TnsNamesMerger.MergeResult getMergeResult() {
+		return this.result != null ? this.result.getMergeResult() : null;
+	}
+
+	//what the copy did, null if it didn't get as far as copying
+	public CopyResult getResult() {
+		return this.result;
+	}
+
+	//System.nanoTime() when the copy started
+	public long getStartedNanos() {
+		return this.startedNanos;
+	}
+
+	public long getDurationNanos() {
+		return this.durationNanos;
+	}
+
+	public Boolean isCopied() {
+		return this.copied;
+	}
+
+	public Boolean isSkipped() {
+		return this.skipped;
+	}
+
+	//skipped because the interrupted run this one resumes had done it already
+	public Boolean isResumed() {
+		return this.resumed;
+	}
+
+	//skipped because another run was writing into the dir
+	public Boolean isLocked() {
+		return this.locked;
+	}
+
+	//neither copied nor skipped means the copy failed
+	public Boolean isFailed() {
+		return !this.copied && !this.skipped && !this.locked;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The files under each destination dir, listed in one walk per dir the first time any of its files is asked for.
+ * Walking a dir hands back every file's attributes along with its name (on Windows, straight from the directory
+ * listing), so comparing a whole tree of files costs one listing instead of a few stats per file.
+ */
+public class DestinationListings {
+
+	//names are matched the way the file system matches them
+	private static final Boolean CASE_INSENSITIVE = File.separatorChar == '\\';
+
+	private final int maxDepth;
+	private final Map<String, Map<String, BasicFileAttributes>> listings = new ConcurrentHashMap<>();
+
+
+	/**
+	 *
+	 * @param maxDepth  how deep to walk each destination dir; the depth of the deepest source file is enough
+	 */
+	public DestinationListings(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+
+	/**
+	 *
+	 * @param destinationPathNoName  the destination dir
+	 * @param relativeName           the file's path under that dir
+	 * @return                       the file's attributes, or null if there's no such file
+	 * @throws IOException
+	 */
+	public BasicFileAttributes get(String destinationPathNoName, String relativeName) throws IOException {
+
+		try {
+			return this.listings.computeIfAbsent(destinationPathNoName, dir -> {
+				try {
+					return this.list(Paths.get(dir));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).get(relativeName);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+
+	private Map<String, BasicFileAttributes> list(Path dir) throws IOException {
+
+		BasicFileAttributes dirAttributes = FileMetadata.getInstance().get(dir);
+		if (dirAttributes == null || !dirAttributes.isDirectory())
+			return Collections.emptyMap();
+
+		Map<String, BasicFileAttributes> files = CASE_INSENSITIVE
+				? new TreeMap<>(String.CASE_INSENSITIVE_ORDER) : new HashMap<>();
+
+		FileMetadata.getInstance().countListing();
+		Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), this.maxDepth, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (attributes.isRegularFile()) {
+					files.put(dir.relativize(file).toString(), attributes);
+					//a file that's then backed up or compared byte by byte isn't stat'ed again
+					FileMetadata.getInstance().put(file, attributes);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				//a file that can't be read is copied over as if it wasn't there
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return files;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The locks on the destination dirs, so two runs (of this machine or another one) never back up and write
+ * the same network\admin at the same time. Each dir has a lock file, locked for as long as any copy of this run
+ * is writing into the dir; concurrent copies into the same dir share the one lock. The lock file is deleted
+ * when the lock is let go of, so it's not left behind in every Oracle home.
+ */
+public class DirectoryLocks {
+
+	public static final String LOCK_FILE_NAME = "TNSNamesSync.lock";
+
+	private final long waitMillis;
+	private final Map<Path, Holder> held = new HashMap<>();
+
+
+	/**
+	 *
+	 * @param waitMillis  how long to wait for a dir another run is writing into, 0 to skip it right away
+	 */
+	public DirectoryLocks(long waitMillis) {
+		this.waitMillis = waitMillis;
+	}
+
+
+	/**
+	 *
+	 * @param directory  the destination dir, e.g. a TNS path
+	 * @return           true if the dir is now locked for this run, false if another run kept it locked
+	 *                   for the whole wait. Every true needs a release
+	 * @throws IOException if the lock file can't be created, e.g. the dir doesn't exist
+	 * @throws InterruptedException
+	 */
+	public Boolean acquire(String directory) throws IOException, InterruptedException {
+
+		Path dir = Paths.get(directory).toAbsolutePath().normalize();
+		Holder holder;
+
+		synchronized (this.held) {
+			holder = this.held.computeIfAbsent(dir, d -> new Holder());
+			holder.users++;
+		}
+
+		//the first copy into the dir takes the lock, the others wait for it here and then share it
+		synchronized (holder) {
+			try {
+				if (holder.lock == null)
+					holder.lock = LockFile.acquire(dir.resolve(LOCK_FILE_NAME), this.waitMillis, true);
+			} finally {
+				if (holder.lock == null)
+					this.release(dir, holder);
+			}
+			return holder.lock != null;
+		}
+	}
+
+
+	public void release(String directory) throws IOException {
+
+		Path dir = Paths.get(directory).toAbsolutePath().normalize();
+		Holder holder;
+		synchronized (this.held) {
+			holder = this.held.get(dir);
+		}
+		if (holder != null) {
+			synchronized (holder) {
+				this.release(dir, holder);
+			}
+		}
+	}
+
+
+	//the lock is let go of before the dir can be looked up again, or the next copy would find it still locked
+	private void release(Path dir, Holder holder) throws IOException {
+
+		synchronized (this.held) {
+			holder.users--;
+			if (holder.users > 0)
+				return;
+
+			this.held.remove(dir);
+			if (holder.lock != null) {
+				holder.lock.close();
+				holder.lock = null;
+			}
+		}
+	}
+
+
+
+	private static class Holder {
+
+		private int users = 0;
+		private LockFile lock;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the home in ORACLE_HOME and the TNS dir in TNS_ADMIN. TNS_ADMIN is a home of its own, the files are
+ * copied into that dir directly
+ */
+//@SuppressWarnings("unused")
+public class EnvironmentHomeProvider implements OracleHomeProvider {
+
+	public static final String NAME = "environment";
+
+
+	private static final String oracleHomeVariable = "ORACLE_HOME";
+	private static final String tnsAdminVariable = "TNS_ADMIN";
+
+
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+
+	@Override
+	public void find(Consumer<OracleHome> onFound) throws Exception {
+
+		String oracleHomePath = System.getenv(oracleHomeVariable);
+		if (oracleHomePath != null && !oracleHomePath.trim().isEmpty()) {
+			OracleHome oh = new OracleHome(oracleHomeVariable, oracleHomePath.trim());
+			if (oh.exists())
+				onFound.accept(oh);
+		}
+
+		String tnsAdminPath = System.getenv(tnsAdminVariable);
+		if (tnsAdminPath != null && !tnsAdminPath.trim().isEmpty()) {
+			OracleHome oh = new OracleHome();
+			oh.setName(tnsAdminVariable);
+			oh.addTNSAdminPath(tnsAdminPath.trim());
+			if (oh.exists())
+				onFound.accept(oh);
+		}
+	}
+}
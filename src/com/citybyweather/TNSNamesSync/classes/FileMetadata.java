@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The attributes of every file the run looks at, read with a single readAttributes call the first time a path
+ * is asked about and kept for the rest of the run. Whether a file exists, its size and its last modified time all
+ * come out of the same snapshot, so scanning the source, deciding on a backup and reporting don't each stat the
+ * file again (on a network share, every stat is a round trip). Attributes handed back by a dir walk are kept as well.
+ *
+ * A destination's snapshot is dropped once the file is written, so the next look at it reads what was written.
+ * Counts the filesystem calls made, so the number of round trips a run takes can be checked.
+ */
+//@SuppressWarnings("unused")
+public class FileMetadata {
+
+	//read as POSIX or DOS attributes where the file system has them, so the permissions come with the same call
+	private static final Class<? extends BasicFileAttributes> ATTRIBUTES_TYPE = attributesType();
+
+	//what's kept for a path that doesn't exist, as the map can't hold null
+	private static final BasicFileAttributes MISSING = new MissingFileAttributes();
+
+	private final Map<Path, BasicFileAttributes> snapshots = new ConcurrentHashMap<>();
+	private final AtomicLong reads = new AtomicLong();
+	private final AtomicLong listings = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+
+
+	//START singleton declarations
+	//@SuppressWarnings("CanBeFinal")
+	private static FileMetadata ourInstance = new FileMetadata();
+
+	//@SuppressWarnings("unused")
+	public static FileMetadata getInstance() {
+		return ourInstance;
+	}
+
+	private FileMetadata() {}
+	//END singleton declarations
+
+
+	/**
+	 *
+	 * @param path  the file (or dir)
+	 * @return      its attributes, or null if there's no such file
+	 * @throws IOException if the attributes can't be read for any other reason
+	 */
+	public BasicFileAttributes get(Path path) throws IOException {
+
+		BasicFileAttributes attributes = this.snapshots.get(path);
+		if (attributes != null)
+			this.hits.incrementAndGet();
+		else {
+			attributes = this.read(path);
+			//two threads may read the same path at once, both get the same snapshot
+			BasicFileAttributes existing = this.snapshots.putIfAbsent(path, attributes);
+			if (existing != null)
+				attributes = existing;
+		}
+
+		return attributes == MISSING ? null : attributes;
+	}
+
+	/**
+	 * Same as get, but the attributes include the POSIX permissions (or DOS attributes) where the file system has
+	 * them. A dir walk may only have handed back the basic attributes, then the file is read again
+	 */
+	public BasicFileAttributes getWithPermissions(Path path) throws IOException {
+
+		BasicFileAttributes attributes = this.get(path);
+		if (attributes == null || ATTRIBUTES_TYPE.isInstance(attributes))
+			return attributes;
+
+		attributes = this.read(path);
+		this.snapshots.put(path, attributes);
+		return attributes == MISSING ? null : attributes;
+	}
+
+	private BasicFileAttributes read(Path path) throws IOException {
+
+		this.reads.incrementAndGet();
+		try {
+			return Files.readAttributes(path, ATTRIBUTES_TYPE);
+		} catch (NoSuchFileException e) {
+			return MISSING;
+		}
+	}
+
+
+	private static Class<? extends BasicFileAttributes> attributesType() {
+
+		Set<String> views = FileSystems.getDefault().supportedFileAttributeViews();
+		if (views.contains("posix"))
+			return PosixFileAttributes.class;
+		if (views.contains("dos"))
+			return DosFileAttributes.class;
+		return BasicFileAttributes.class;
+	}
+
+
+	/**
+	 * Same as Files.exists, a file that can't be read counts as not there
+	 */
+	public Boolean exists(Path path) {
+		try {
+			return this.get(path) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	//the size, 0 if there's no such file
+	public long size(Path path) throws IOException {
+		BasicFileAttributes attributes = this.get(path);
+		return attributes != null ? attributes.size() : 0;
+	}
+
+
+	/**
+	 * Keeps the attributes a dir walk read along with the file's name, so the file isn't stat'ed again
+	 */
+	public void put(Path path, BasicFileAttributes attributes) {
+		this.snapshots.put(path, attributes);
+	}
+
+	//called once per dir walk, whose per file attributes are then put in
+	public void countListing() {
+		this.listings.incrementAndGet();
+	}
+
+
+	/**
+	 * Drops the snapshot of a file that was just written, moved or deleted
+	 */
+	public void invalidate(Path path) {
+		this.snapshots.remove(path);
+	}
+
+
+	//readAttributes calls made
+	public long getReads() {
+		return this.reads.get();
+	}
+
+	//dir walks made
+	public long getListings() {
+		return this.listings.get();
+	}
+
+	//lookups answered from a snapshot, each one a filesystem call that wasn't made
+	public long getHits() {
+		return this.hits.get();
+	}
+
+
+
+	private static class MissingFileAttributes implements BasicFileAttributes {
+
+		@Override
+		public FileTime lastModifiedTime() {
+			return null;
+		}
+
+		@Override
+		public FileTime lastAccessTime() {
+			return null;
+		}
+
+		@Override
+		public FileTime creationTime() {
+			return null;
+		}
+
+		@Override
+		public boolean isRegularFile() {
+			return false;
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return false;
+		}
+
+		@Override
+		public boolean isSymbolicLink() {
+			return false;
+		}
+
+		@Override
+		public boolean isOther() {
+			return false;
+		}
+
+		@Override
+		public long size() {
+			return 0;
+		}
+
+		@Override
+		public Object fileKey() {
+			return null;
+		}
+	}
+}
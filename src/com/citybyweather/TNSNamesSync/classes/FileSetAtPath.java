@@ -25,18 +25,33 @@
 package com.citybyweather.TNSNamesSync.classes;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.util.HashMap;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 
+/**
+ * The files to copy out of one dir. Once it's filled in it's read by every copy thread, so the map is never
+ * changed in place: every change publishes a new unmodifiable map, and readers only ever see a complete one
+ */
 //@SuppressWarnings({"unused", "CanBeFinal"})
 public class FileSetAtPath {
 
-	private String pathNoName;
+	private final String pathNoName;
 	//@SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
-	private HashMap<String, SimpleFile> files = new HashMap<>();
-	private Integer numTriedToAdd = 0;
+	private volatile Map<String, SimpleFile> files = Collections.emptyMap();
+	private volatile Integer numTriedToAdd = 0;
+	private volatile Integer maxDepth = 1;
 
 
 	public FileSetAtPath(String pathNoName) {
@@ -44,22 +59,96 @@ public class FileSetAtPath {
 
 	}
 
-	public HashMap<String, SimpleFile> getFiles() {
+	//unmodifiable, in the order the files were added
+	public Map<String, SimpleFile> getFiles() {
 		return this.files;
 	}
 
 
-	public void add(String fileName) throws IOException, ParseException {
+	public synchronized void add(String fileName) throws IOException {
 
 		SimpleFile sf = new SimpleFile(fileName, this.pathNoName);
 		this.numTriedToAdd++;
 		if (sf.exists())
-			this.files.put(fileName, new SimpleFile(fileName, this.pathNoName));
+			this.publish(fileName, sf);
+
+	}
+
+	private void publish(String fileName, SimpleFile sf) {
+		Map<String, SimpleFile> files = new LinkedHashMap<>(this.files);
+		files.put(fileName, sf);
+		this.files = Collections.unmodifiableMap(files);
+	}
+
+	/**
+	 * Adds every file under the path (at any depth) whose path relative to it matches one of the include globs
+	 * and none of the exclude globs, e.g. "*.ora" or "wallet/*" ("**" matches across dirs). A dir matching an exclude glob
+	 * isn't walked into at all. The files are named by their relative path, and are listed in one walk that
+	 * also reads their attributes, so nothing is stat'ed again.
+	 *
+	 * @param includes  globs of the files to add
+	 * @param excludes  globs of the files and dirs to leave out
+	 * @throws IOException
+	 */
+	public synchronized void addMatching(List<String> includes, List<String> excludes) throws IOException {
+
+		Path root = Paths.get(this.pathNoName);
+		List<PathMatcher> includeMatchers = toMatchers(root.getFileSystem(), includes);
+		List<PathMatcher> excludeMatchers = toMatchers(root.getFileSystem(), excludes);
+		//filled in by the walk, and only published once it's done
+		Map<String, SimpleFile> files = new LinkedHashMap<>(this.files);
+
+		FileMetadata.getInstance().countListing();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+				return !dir.equals(root) && matchesAny(excludeMatchers, root.relativize(dir))
+						? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+
+				Path relative = root.relativize(file);
+				if (!attributes.isRegularFile() || !matchesAny(includeMatchers, relative)
+						|| matchesAny(excludeMatchers, relative))
+					return FileVisitResult.CONTINUE;
+
+				numTriedToAdd++;
+				maxDepth = Math.max(maxDepth, relative.getNameCount());
+				files.put(relative.toString(), new SimpleFile(relative.toString(), pathNoName, attributes));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		this.files = Collections.unmodifiableMap(files);
+	}
+
+	private static List<PathMatcher> toMatchers(FileSystem fileSystem, List<String> globs) {
+		List<PathMatcher> matchers = new ArrayList<>();
+		for (String glob : globs)
+			matchers.add(fileSystem.getPathMatcher("glob:" + glob));
+		return matchers;
+	}
+
+	private static Boolean matchesAny(List<PathMatcher> matchers, Path path) {
+		for (PathMatcher matcher : matchers) {
+			if (matcher.matches(path))
+				return true;
+		}
+		return false;
+	}
+
 
+	//number of path elements of the deepest file, 1 for files right at the path
+	public Integer getMaxDepth() {
+		return this.maxDepth;
 	}
 
-	public void remove(String fileName) {
-		this.files.remove(fileName);
+	public synchronized void remove(String fileName) {
+		Map<String, SimpleFile> files = new LinkedHashMap<>(this.files);
+		files.remove(fileName);
+		this.files = Collections.unmodifiableMap(files);
 	}
 
 	public Boolean anyExists() {
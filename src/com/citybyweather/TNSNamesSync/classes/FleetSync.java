@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Syncs the files to every target root of a manifest in the one run, instead of one run per machine.
+ * Every target gets a thread that runs its attempts, each with a timeout, and prints the target's result
+ * line as soon as it's done. On Java 21 and later these are virtual threads, with only the number of targets
+ * synced at the same time limited; on older versions they come from a pool of that size
+ */
+public class FleetSync {
+
+	public static final Integer DEFAULT_CONCURRENCY = 256;
+
+	private static final String virtualExecutorMethod = "newVirtualThreadPerTaskExecutor";
+	private static final String resultFormat = "%-8s %s: %s";
+
+	private final FileSetAtPath files;
+	private final CopySettings settings;
+	private final Integer concurrency;
+	private final long timeoutMillis;
+	private final Integer retries;
+	private Boolean virtualThreads = false;
+
+
+	/**
+	 *
+	 * @param files          the files to copy to every target
+	 * @param settings       how to copy; shared by all of the targets
+	 * @param concurrency    how many targets are synced at the same time
+	 * @param timeoutMillis  how long an attempt at a target can take before it's given up on
+	 * @param retries        how many more attempts a target gets after a failed or timed out one
+	 */
+	public FleetSync(FileSetAtPath files, CopySettings settings, Integer concurrency, long timeoutMillis, Integer retries) {
+		this.files = files;
+		this.settings = settings;
+		this.concurrency = concurrency;
+		this.timeoutMillis = timeoutMillis;
+		this.retries = retries;
+	}
+
+
+	/**
+	 *
+	 * @param manifest  one target root per line, a UNC path like \\host\c$ or a local dir.
+	 *                  Blank lines and lines starting with # are left out
+	 * @return          the targets in manifest order, each only once
+	 * @throws IOException
+	 */
+	public static List<String> readManifest(Path manifest) throws IOException {
+
+		Set<String> targets = new LinkedHashSet<>();
+		for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#"))
+				targets.add(line);
+		}
+
+		return new ArrayList<>(targets);
+	}
+
+
+	/**
+	 * Prints a line per target as the targets finish, so in the order they finish in
+	 *
+	 * @param targets  the target roots
+	 * @return         the last attempt of every target, in the order of the targets
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public List<FleetTask> run(List<String> targets) throws InterruptedException, ExecutionException {
+
+		ExecutorService targetExecutor = this.newExecutor(this.concurrency);
+		//timed out attempts are left running, so attempts can't share a bounded pool with the targets
+		ExecutorService attemptExecutor = this.newExecutor(null);
+		Semaphore permits = new Semaphore(this.concurrency);
+
+		List<Future<FleetTask>> running = new ArrayList<>();
+		List<FleetTask> results = new ArrayList<>();
+
+		try {
+			for (String target : targets)
+				running.add(targetExecutor.submit(() -> this.syncTarget(target, attemptExecutor, permits)));
+
+			for (Future<FleetTask> result : running)
+				results.add(result.get());
+
+		} finally {
+			targetExecutor.shutdownNow();
+			attemptExecutor.shutdownNow();
+		}
+
+		return results;
+	}
+
+
+	private FleetTask syncTarget(String target, ExecutorService attemptExecutor, Semaphore permits)
+			throws InterruptedException, ExecutionException {
+
+		permits.acquire();
+		try {
+			long started = System.nanoTime();
+			FleetTask task = null;
+
+			for (int attempt = 0; attempt <= this.retries; attempt++) {
+
+				task = new FleetTask(target, this.files, this.settings, task);
+				Future<FleetTask> result = attemptExecutor.submit(task);
+				try {
+					result.get(this.timeoutMillis, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					//the retry would back up and write the same files, so it only starts once this attempt has stopped
+					result.cancel(true);
+					task.setTimedOut();
+					if (!task.awaitStopped(this.timeoutMillis))
+						//stuck on a hung share; it's abandoned, and not retried so nothing races it if it comes back
+						break;
+				}
+
+				if (!task.isRetryable())
+					break;
+			}
+
+			System.out.println(this.formatResult(task, System.nanoTime() - started));
+			return task;
+
+		} finally {
+			permits.release();
+		}
+	}
+
+
+	private String formatResult(FleetTask task, long nanos) {
+
+		int copied = 0, skipped = 0, failed = 0;
+		for (CopyTask copy : task.getTasks()) {
+			if (copy.isCopied())
+				copied++;
+			else if (copy.isSkipped() || copy.isLocked())
+				skipped++;
+			else
+				failed++;
+		}
+
+		StringBuilder details = new StringBuilder();
+		details.append(task.getHomes()).append(task.getHomes() == 1 ? " home, " : " homes, ");
+		details.append(copied).append(" copied, ").append(skipped).append(" skipped, ").append(failed).append(" failed, ");
+		details.append(TimeUnit.NANOSECONDS.toMillis(nanos)).append(" ms");
+		if (task.getAttempt() > 1)
+			details.append(", ").append(task.getAttempt()).append(" attempts");
+		if (task.isTimedOut() && task.isRunning())
+			details.append(" (timed out after ").append(this.timeoutMillis).append(" ms, still running, not retried)");
+		else if (task.isTimedOut())
+			details.append(" (timed out after ").append(this.timeoutMillis).append(" ms)");
+		else if (task.getError() != null)
+			details.append(" (").append(task.getError()).append(")");
+
+		String status = task.isOk() ? "OK" : task.isTimedOut() ? "TIMEOUT" : "FAILED";
+		return String.format(resultFormat, status, task.getTarget(), details);
+	}
+
+
+	/**
+	 * Virtual threads are looked up by reflection, so the tool still builds for and runs on older versions
+	 *
+	 * @param poolSize  the size of the pool to fall back to, null for as many threads as needed
+	 */
+	private ExecutorService newExecutor(Integer poolSize) {
+
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class.getMethod(virtualExecutorMethod).invoke(null);
+			this.virtualThreads = true;
+			return executor;
+		} catch (ReflectiveOperationException e) {
+			//before Java 21
+		}
+
+		//daemon threads, so an abandoned attempt doesn't keep the program from exiting
+		return poolSize == null
+				? Executors.newCachedThreadPool(FleetSync::newDaemonThread)
+				: Executors.newFixedThreadPool(poolSize, FleetSync::newDaemonThread);
+	}
+
+	private static Thread newDaemonThread(Runnable runnable) {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+
+	//known once run has started
+	public Boolean isVirtualThreads() {
+		return this.virtualThreads;
+	}
+}
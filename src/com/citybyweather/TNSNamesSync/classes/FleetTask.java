@@ -0,0 +1,218 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * One attempt at syncing one fleet target: finds the homes under the target root and copies every file
+ * into every one of their TNS paths. A retry gets the previous attempt, and only redoes the copies that failed.
+ * The result is kept on the task, like RollbackTask
+ */
+public class FleetTask implements Callable<FleetTask> {
+
+	private final String target;
+	private final FileSetAtPath files;
+	private final CopySettings settings;
+	private final Integer attempt;
+
+	//this attempt's copies, and the ones that went through in the previous attempts
+	private final List<CopyTask> tasks = Collections.synchronizedList(new ArrayList<>());
+	private final Set<String> done = Collections.synchronizedSet(new LinkedHashSet<>());
+	private Integer homes = 0;
+	private String error;
+	private Boolean retryable = false;
+	private Boolean timedOut = false;
+	private volatile Boolean started = false;
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+
+	/**
+	 *
+	 * @param target    the target root, as listed in the manifest
+	 * @param files     the files to copy; they're shared with the other targets and never modified
+	 * @param settings  how to copy; shared by all of the targets
+	 * @param previous  the attempt this one retries, null for the first one
+	 */
+	public FleetTask(String target, FileSetAtPath files, CopySettings settings, FleetTask previous) {
+		this.target = target;
+		this.files = files;
+		this.settings = settings;
+		this.attempt = previous == null ? 1 : previous.attempt + 1;
+
+		if (previous != null) {
+			synchronized (previous.tasks) {
+				for (CopyTask task : previous.tasks) {
+					if (!task.isFailed())
+						this.tasks.add(task);
+				}
+			}
+			this.done.addAll(previous.done);
+		}
+	}
+
+
+	@Override
+	public FleetTask call() {
+
+		this.started = true;
+		try {
+			//cancelled just as it was starting
+			if (Thread.currentThread().isInterrupted())
+				return this;
+			return this.sync();
+		} finally {
+			this.finished.countDown();
+		}
+	}
+
+
+	private FleetTask sync() {
+
+		Path root = Paths.get(this.target);
+		if (!Files.isDirectory(root)) {
+			//the machine is off or the share is down, which may not last
+			this.error = "not reachable";
+			this.retryable = true;
+			return this;
+		}
+
+		List<OracleHome> oracleHomes = new ArrayList<>();
+		try {
+			new TargetRootHomeProvider(root).find(oracleHomes::add);
+		} catch (Exception e) {
+			//e.g. the share went away half way through
+			this.error = "discovery failed: " + e.getMessage();
+			this.retryable = true;
+			return this;
+		}
+
+		if (oracleHomes.isEmpty()) {
+			this.error = "no Oracle homes found";
+			return this;
+		}
+		this.homes = oracleHomes.size();
+
+		//a dir listed under more than one home is only written once
+		Set<String> tnsPaths = new LinkedHashSet<>();
+		for (OracleHome oracleHome : oracleHomes)
+			tnsPaths.addAll(oracleHome.getTNSPaths());
+
+		Integer failed = 0;
+		for (SimpleFile file : this.files.getFiles().values()) {
+			for (String tnsPath : tnsPaths) {
+
+				if (Thread.currentThread().isInterrupted())
+					return this;
+				if (this.done.contains(tnsPath + file.getName()))
+					continue;
+
+				CopyTask task = new CopyTask(file, tnsPath, this.settings);
+				task.call();
+				this.tasks.add(task);
+				if (task.isFailed())
+					failed++;
+				else
+					this.done.add(tnsPath + file.getName());
+			}
+		}
+
+		if (failed > 0) {
+			this.error = failed + (failed == 1 ? " copy" : " copies") + " failed";
+			this.retryable = true;
+		}
+
+		return this;
+	}
+
+
+	/**
+	 * Waits for a timed out attempt to notice it was interrupted, which it does between copies
+	 *
+	 * @param timeoutMillis  how long to wait
+	 * @return               true if the attempt has stopped (or never started), false if it's still going
+	 * @throws InterruptedException
+	 */
+	public Boolean awaitStopped(long timeoutMillis) throws InterruptedException {
+		//a cancelled attempt that hadn't started yet never will
+		return !this.started || this.finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	//an attempt abandoned while still copying, e.g. stuck on a hung share
+	public Boolean isRunning() {
+		return this.started && this.finished.getCount() > 0;
+	}
+
+	public void setTimedOut() {
+		this.timedOut = true;
+		this.retryable = true;
+	}
+
+	public String getTarget() {
+		return this.target;
+	}
+
+	public Integer getAttempt() {
+		return this.attempt;
+	}
+
+	public Integer getHomes() {
+		return this.homes;
+	}
+
+	//the copies that went through in any attempt, and the ones that failed in this one
+	public List<CopyTask> getTasks() {
+		synchronized (this.tasks) {
+			return new ArrayList<>(this.tasks);
+		}
+	}
+
+	public String getError() {
+		return this.error;
+	}
+
+	public Boolean isRetryable() {
+		return this.retryable;
+	}
+
+	public Boolean isTimedOut() {
+		return this.timedOut;
+	}
+
+	public Boolean isOk() {
+		return this.error == null && !this.timedOut;
+	}
+}
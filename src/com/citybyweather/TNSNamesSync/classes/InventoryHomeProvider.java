@@ -0,0 +1,184 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the homes listed in Oracle's central inventory (ContentsXML\inventory.xml). The inventory is located
+ * through oraInst.loc on Unix and is in its default place under Program Files on Windows
+ */
+//@SuppressWarnings("unused")
+public class InventoryHomeProvider implements OracleHomeProvider {
+
+	public static final String NAME = "inventory";
+
+
+	private static final String[] oraInstLocFiles = { "/etc/oraInst.loc", "/var/opt/oracle/oraInst.loc" };
+	private static final String inventoryLocKey = "inventory_loc=";
+
+	private static final String[] windowsInventoryEnvDirs = { "ProgramFiles", "ProgramFiles(x86)" };
+	private static final String windowsInventorySubdir = "Oracle\\Inventory";
+
+	private static final String inventoryFileSubpath = "ContentsXML/inventory.xml";
+
+	private static final String homeElement = "HOME";
+	private static final String nameAttribute = "NAME";
+	private static final String locAttribute = "LOC";
+	private static final String removedAttribute = "REMOVED";
+
+
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+
+	@Override
+	public void find(Consumer<OracleHome> onFound) throws Exception {
+
+		for (Path inventoryFile : this.findInventoryFiles()) {
+			for (Map.Entry<String, String> home : parseInventory(inventoryFile).entrySet()) {
+				OracleHome oh = new OracleHome(home.getValue(), home.getKey());
+				if (oh.exists())
+					onFound.accept(oh);
+			}
+		}
+	}
+
+
+	private List<Path> findInventoryFiles() throws IOException {
+
+		//the same inventory can be pointed to more than once, e.g. by both oraInst.loc files
+		Set<Path> inventoryDirs = new LinkedHashSet<>();
+
+		if (System.getProperty("os.name").contains("Windows")) {
+			for (String envDir : windowsInventoryEnvDirs) {
+				String dir = System.getenv(envDir);
+				if (dir != null)
+					inventoryDirs.add(Paths.get(dir, windowsInventorySubdir));
+			}
+		}
+		else {
+			for (String oraInstLoc : oraInstLocFiles) {
+				Path oraInstLocPath = Paths.get(oraInstLoc);
+				String inventoryDir = Files.isReadable(oraInstLocPath) ? parseOraInstLoc(oraInstLocPath) : null;
+				if (inventoryDir != null)
+					inventoryDirs.add(Paths.get(inventoryDir));
+			}
+		}
+
+		List<Path> inventoryFiles = new ArrayList<>();
+		for (Path inventoryDir : inventoryDirs) {
+			Path inventoryFile = getInventoryFile(inventoryDir);
+			if (Files.isReadable(inventoryFile))
+				inventoryFiles.add(inventoryFile);
+		}
+
+		return inventoryFiles;
+	}
+
+
+	/**
+	 *
+	 * @param oraInstLocPath  an oraInst.loc file
+	 * @return                the inventory dir in its inventory_loc line, null if there's none
+	 * @throws IOException
+	 */
+	public static String parseOraInstLoc(Path oraInstLocPath) throws IOException {
+
+		for (String line : Files.readAllLines(oraInstLocPath, StandardCharsets.ISO_8859_1)) {
+			line = line.trim();
+			if (line.startsWith(inventoryLocKey) && line.length() > inventoryLocKey.length())
+				return line.substring(inventoryLocKey.length()).trim();
+		}
+
+		return null;
+	}
+
+	public static Path getInventoryFile(Path inventoryDir) {
+		return inventoryDir.resolve(inventoryFileSubpath);
+	}
+
+
+	/**
+	 * Reads the HOME elements of an inventory.xml with a streaming reader, leaving out the homes marked as removed.
+	 * DTDs and external entities are turned off, the inventory never needs them
+	 *
+	 * @param inventoryFile  the inventory.xml file
+	 * @return               key is the home path, value is its name, in the order they're listed in.
+	 *                       Homes whose dir doesn't exist are included
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static Map<String, String> parseInventory(Path inventoryFile) throws IOException, XMLStreamException {
+
+		Map<String, String> oracleHomes = new LinkedHashMap<>();
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		try (InputStream in = Files.newInputStream(inventoryFile)) {
+
+			XMLStreamReader reader = factory.createXMLStreamReader(in);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() != XMLStreamConstants.START_ELEMENT || !homeElement.equals(reader.getLocalName()))
+						continue;
+
+					String name = reader.getAttributeValue(null, nameAttribute);
+					String loc = reader.getAttributeValue(null, locAttribute);
+					if (name == null || loc == null || "T".equals(reader.getAttributeValue(null, removedAttribute)))
+						continue;
+
+					oracleHomes.putIfAbsent(loc, name);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		return oracleHomes;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An exclusive lock on a lock file, held by one process at a time (on Windows, also across machines
+ * for files on a share).
+ *
+ * By default, the lock file is left in place when the lock is released. A lock file that's deleted on release
+ * (so that none is left behind, e.g. in every network\\admin dir) may have been opened by another process just
+ * before it was deleted; that process would then lock a file nobody else can see any more. So whoever takes
+ * such a lock only keeps it if the file at the lock path is still the one that was locked.
+ */
+public class LockFile implements AutoCloseable {
+
+	private static final long RETRY_MILLIS = 100;
+
+	/*
+		The lock covers a single byte past anything that's written, not the whole file: on Windows a lock keeps
+		everyone else from reading the bytes it covers, and the token has to be read back through the path
+	*/
+	private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+
+	private final Path lockPath;
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final Boolean deleteOnRelease;
+
+
+	private LockFile(Path lockPath, FileChannel channel, FileLock lock, Boolean deleteOnRelease) {
+		this.lockPath = lockPath;
+		this.channel = channel;
+		this.lock = lock;
+		this.deleteOnRelease = deleteOnRelease;
+	}
+
+
+	public static LockFile acquire(Path lockPath, long waitMillis) throws IOException, InterruptedException {
+		return acquire(lockPath, waitMillis, false);
+	}
+
+	/**
+	 * FileChannel.lock can't time out, so the lock is tried again every RETRY_MILLIS until the wait is over
+	 *
+	 * @param lockPath          the lock file; created if it's not there
+	 * @param waitMillis        how long to wait for another process to let go of the lock, 0 to not wait
+	 * @param deleteOnRelease   whether the lock file is deleted when the lock is released
+	 * @return                  the lock, or null if another process still held it after the wait
+	 * @throws IOException if the lock file can't be created or opened
+	 * @throws InterruptedException
+	 */
+	public static LockFile acquire(Path lockPath, long waitMillis, Boolean deleteOnRelease)
+			throws IOException, InterruptedException {
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+
+		while (true) {
+			LockFile lockFile = deleteOnRelease ? tryAcquireDeletable(lockPath) : tryAcquire(lockPath);
+			if (lockFile != null)
+				return lockFile;
+
+			if (System.nanoTime() >= deadline)
+				return null;
+			Thread.sleep(RETRY_MILLIS);
+		}
+	}
+
+
+	private static LockFile tryAcquire(Path lockPath) throws IOException {
+
+		FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			FileLock lock = tryLock(channel);
+			if (lock != null)
+				return new LockFile(lockPath, channel, lock, false);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+
+		channel.close();
+		return null;
+	}
+
+
+	/**
+	 * Where the file system gives files a key (the inode on POSIX), the file at the path has to have the same key
+	 * before it's opened, after it's opened and once it's locked. Reading the file back through the path isn't an
+	 * option there, as closing any handle to the file lets go of the process's lock on it.
+	 * Without file keys (Windows), a token is written into the locked file and read back through the path instead.
+	 *
+	 * @return  the lock, or null if someone else holds it, or the file was deleted or replaced along the way
+	 */
+	private static LockFile tryAcquireDeletable(Path lockPath) throws IOException {
+
+		BasicFileAttributes beforeOpen;
+		FileChannel channel;
+		try {
+			try {
+				Files.createFile(lockPath);
+			} catch (FileAlreadyExistsException e) {
+				//taken or left behind by someone else, which is fine
+			}
+			beforeOpen = Files.readAttributes(lockPath, BasicFileAttributes.class);
+			//not created here, so the file that was checked is the one that's opened (or it's gone by then)
+			channel = FileChannel.open(lockPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (NoSuchFileException | AccessDeniedException e) {
+			//deleted by the holder in between; on Windows, a deleted file can't be opened until everyone closed it
+			return null;
+		}
+
+		try {
+			Object fileKey = beforeOpen.fileKey();
+			if (fileKey == null || fileKey.equals(fileKeyOf(lockPath))) {
+
+				FileLock lock = tryLock(channel);
+				if (lock != null) {
+					//the file kept open can't have its key reused, so the same key means the same file
+					if (fileKey != null ? fileKey.equals(fileKeyOf(lockPath)) : hasToken(channel, lockPath))
+						return new LockFile(lockPath, channel, lock, true);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+
+		//either someone else holds the lock, or the file locked has been deleted since it was opened
+		channel.close();
+		return null;
+	}
+
+
+	private static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock(LOCK_POSITION, 1, false);
+		} catch (OverlappingFileLockException e) {
+			//held by this process; callers share a lock within the process instead of locking twice
+			return null;
+		}
+	}
+
+	//null if the file is gone
+	private static Object fileKeyOf(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	//only the holder of the lock writes into the file, so the token is only found at the path if it's the same file
+	private static Boolean hasToken(FileChannel channel, Path lockPath) throws IOException {
+
+		byte[] token = UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+		channel.truncate(0);
+		channel.write(ByteBuffer.wrap(token), 0);
+
+		try {
+			return Arrays.equals(token, Files.readAllBytes(lockPath));
+		} catch (IOException e) {
+			//gone, or deleted but still open elsewhere
+			return false;
+		}
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		try {
+			//deleted while still locked; whoever opened it before that finds it gone once they get the lock
+			if (this.deleteOnRelease)
+				Files.deleteIfExists(this.lockPath);
+		} finally {
+			try {
+				this.lock.release();
+			} finally {
+				this.channel.close();
+			}
+		}
+	}
+
+
+	public Path getLockPath() {
+		return this.lockPath;
+	}
+}
@@ -25,10 +25,13 @@
 package com.citybyweather.TNSNamesSync.classes;
 
 
+import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 //@SuppressWarnings("unused")
@@ -38,10 +41,14 @@ public class OracleHome {
 
 	private List<String> paths = new ArrayList<>();
 	private List<String> tnsPaths = new ArrayList<>();
+	//TNS paths that are the same dir as a TNS path of another home (or of this one), and who writes to it
+	private Map<String, String> sharedTNSPaths = new LinkedHashMap<>();
+	//TNS dirs that aren't under one of the paths, such as TNS_ADMIN
+	private List<String> tnsAdminPaths = new ArrayList<>();
 
 
 
-	private static final String oracleTNSFileSubdir = "\\network\\admin\\";
+	private static final String oracleTNSFileSubdir = File.separator + "network" + File.separator + "admin" + File.separator;
 
 	public OracleHome() {}
 
@@ -63,7 +70,7 @@ public class OracleHome {
 
 
 	public Boolean exists() {
-	   return !this.paths.isEmpty();
+	   return !this.paths.isEmpty() || !this.tnsAdminPaths.isEmpty();
 	}
 
 	public String getName() {
@@ -91,6 +98,35 @@ public class OracleHome {
 		return this.tnsPaths;
 	}
 
+	/**
+	 * Takes a TNS path out of the ones this home copies into, because it's the same physical dir as a path
+	 * that's already written to. It's still reported as part of this home
+	 *
+	 * @param tnsPath    one of this home's TNS paths
+	 * @param writtenAs  the path (and home) that dir is written through
+	 */
+	public void shareTNSPath(String tnsPath, String writtenAs) {
+		if (this.tnsPaths.remove(tnsPath))
+			this.sharedTNSPaths.put(tnsPath, writtenAs);
+	}
+
+	//TNS paths left out of the copies, with the path (and home) they're written through
+	public Map<String, String> getSharedTNSPaths() {
+		return this.sharedTNSPaths;
+	}
+
+	/**
+	 * Adds a dir the files are copied into directly, rather than into its network\admin
+	 */
+	public void addTNSAdminPath(String tnsAdminPath) {
+
+		String tnsPath = tnsAdminPath.endsWith(File.separator) ? tnsAdminPath : tnsAdminPath + File.separator;
+		if (!this.tnsPaths.contains(tnsPath) && this.pathExists(tnsAdminPath)) {
+			this.tnsAdminPaths.add(tnsAdminPath);
+			this.tnsPaths.add(tnsPath);
+		}
+	}
+
 	public void addPath(String path) {
 
 		if (!this.paths.contains(path) && this.pathExists(path)) {
@@ -108,6 +144,20 @@ public class OracleHome {
 			sb.append(s);
 			sb.append("]\n");
 		}
+		for (String s : this.tnsAdminPaths)
+		{
+			sb.append("  [");
+			sb.append(s);
+			sb.append("] (TNS_ADMIN)\n");
+		}
+		for (Map.Entry<String, String> shared : this.sharedTNSPaths.entrySet())
+		{
+			sb.append("  [");
+			sb.append(shared.getKey());
+			sb.append("] is the same dir as ");
+			sb.append(shared.getValue());
+			sb.append(", written once\n");
+		}
 
 		return sb.toString();
 	}
@@ -24,36 +24,39 @@
 
 package com.citybyweather.TNSNamesSync.classes;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Looks up the Oracle homes through all of its providers at once, and merges what they find
+ */
 //@SuppressWarnings("unused")
 public class OracleHomeFinder {
 
 
-	private static final String regCmd32bitSwitch = "/reg:32";
-	private static final String regCmd64bitSwitch = "/reg:64";
-
-	private static final String cmdRegQuery = "reg query";
-	private static final String oracleHomeRegValueParams = "/v ORACLE_HOME";
-
-	private static final String oracleRegistryPath = "HKEY_LOCAL_MACHINE\\SOFTWARE\\ORACLE";
-	//private static final String oracleRegPath32 = "HKEY_LOCAL_MACHINE\\SOFTWARE\\Wow6432Node\\ORACLE";
-
-
+	//the providers --discovery can pick from
+	public static final List<String> PROVIDER_NAMES = Collections.unmodifiableList(Arrays.asList(
+			RegistryHomeProvider.NAME, InventoryHomeProvider.NAME, OratabHomeProvider.NAME, EnvironmentHomeProvider.NAME));
 
-	private static final String oracleRegKeyPattern1 = "^.*\\\\KEY_.*$";
-	private static final String oracleRegKeyPattern2 = "^.*ORACLE_HOME.*$";
 
-	private static final String oracleRegKeyPrefix = "KEY_";
-
-	private Boolean is64bit = false;
+	private RegistryHomeProvider registryProvider = new RegistryHomeProvider();
+	private List<OracleHomeProvider> providers = new ArrayList<>();
 
 
 
 	//@SuppressWarnings("CanBeFinal")
 	private Map<String, OracleHome> oracleHomes = new HashMap<>();
-	private List<String> oracleRegKeys = new ArrayList<>();
+	//real TNS dir -> the path (and home) it's written through
+	private Map<Path, String> writtenAs = new HashMap<>();
 
 
 	//START singleton declarations
@@ -67,8 +70,11 @@ public class OracleHomeFinder {
 
 	private OracleHomeFinder() {
 
-		//if it's a 64 bit system, we'll need both the 64 and 32 bit registry queries
-		this.is64bit = this.isOS64Bit();
+		//the registry only exists on Windows, and oratab only everywhere else
+		if (File.separatorChar == '\\')
+			this.setProviders(Arrays.asList(RegistryHomeProvider.NAME, InventoryHomeProvider.NAME, EnvironmentHomeProvider.NAME));
+		else
+			this.setProviders(Arrays.asList(OratabHomeProvider.NAME, InventoryHomeProvider.NAME, EnvironmentHomeProvider.NAME));
 
 	}
 	//END singleton declarations
@@ -76,130 +82,189 @@ public class OracleHomeFinder {
 
 
 	/**
-	 * Courtesy of http://stackoverflow.com/questions/1856565/how-do-you-determine-32-or-64-bit-architecture-of-windows-using-java
-	 * Determine if the OS 64 bit
-	 * @return boolean true is 64 bit
+	 *
+	 * @param providerNames  the providers to look the homes up with, out of PROVIDER_NAMES
+	 * @throws IllegalArgumentException if a provider name is unknown
 	 */
-	private Boolean isOS64Bit() {
-		Boolean is64bit;
-
-		if (System.getProperty("os.name").contains("Windows"))
-			is64bit = (System.getenv("ProgramFiles(x86)") != null);
-		else
-			is64bit = (System.getProperty("os.arch").contains("64"));
+	public void setProviders(List<String> providerNames) {
+
+		List<OracleHomeProvider> providers = new ArrayList<>();
+		for (String providerName : new LinkedHashSet<>(providerNames)) {
+			switch (providerName) {
+				case RegistryHomeProvider.NAME:
+					providers.add(this.registryProvider);
+					break;
+				case InventoryHomeProvider.NAME:
+					providers.add(new InventoryHomeProvider());
+					break;
+				case OratabHomeProvider.NAME:
+					providers.add(new OratabHomeProvider());
+					break;
+				case EnvironmentHomeProvider.NAME:
+					providers.add(new EnvironmentHomeProvider());
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown discovery provider [" + providerName + "], expected one of " + PROVIDER_NAMES);
+			}
+		}
 
-		return is64bit;
+		this.providers = providers;
 	}
 
 
-	//@SuppressWarnings("unused")
-	public Map<String, OracleHome> find() throws Exception {
+	/**
+	 * In batch mode, all of the ORACLE_HOME values are read with a single recursive query per registry view
+	 * instead of one query for the keys plus one more for every KEY_* key found
+	 */
+	public void setBatchDiscovery(Boolean batchDiscovery) {
+		this.registryProvider.setBatchDiscovery(batchDiscovery);
+	}
 
-		OracleHome oh;
-		String oracleHomeName;
-		List<String> oracleHomeValues;
+	public void setRegistryOutputParser(RegistryOutputParser registryOutputParser) {
+		this.registryProvider.setRegistryOutputParser(registryOutputParser);
+	}
 
-		//find the oracle home registry keys
-		this.oracleRegKeys = this.findOracleRegistryKeys();
 
-		//for each of the keys, find the oracle home name and path
-		for (String oracleRegKey : this.oracleRegKeys) {
+	//@SuppressWarnings("unused")
+	public Map<String, OracleHome> find() throws Exception {
+		return this.find(null);
+	}
 
-			oracleHomeName = this.getOracleHomeNameFromRegKey(oracleRegKey);
-			oracleHomeValues = this.getOracleHomePathsFromRegKey(oracleRegKey);
 
+	/**
+	 * Every provider runs on a thread of its own, so the ones that only read a file or two aren't held up
+	 * by the registry queries. A provider that fails is reported and the homes found by the others are kept
+	 *
+	 * @param onFound  if not null, gets every home as soon as its paths are known, so the homes can be worked on
+	 *                 while the rest are still being looked up. It's called by one provider at a time
+	 * @return         all of the homes found
+	 * @throws Exception if every provider failed
+	 */
+	public Map<String, OracleHome> find(Consumer<OracleHome> onFound) throws Exception {
+
+		this.oracleHomes.clear();
+		this.writtenAs.clear();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(this.providers.size(), 1));
+		Map<OracleHomeProvider, Future<?>> running = new LinkedHashMap<>();
+		try {
+			for (OracleHomeProvider provider : this.providers)
+				running.put(provider, executor.submit(() -> {
+					provider.find(oh -> this.addOracleHome(oh, provider, onFound));
+					return null;
+				}));
+		} finally {
+			executor.shutdown();
+		}
 
-			oh = new OracleHome(oracleHomeName, oracleHomeValues);
-			if (oh.exists()) {
-				this.oracleHomes.put(oracleHomeName, oh);
+		Exception failure = null;
+		Integer failed = 0;
+		for (Map.Entry<OracleHomeProvider, Future<?>> provider : running.entrySet()) {
+			try {
+				provider.getValue().get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				failure = cause instanceof Exception ? (Exception) cause : e;
+				failed++;
+				System.out.println("Warning: " + provider.getKey().getName() + " discovery failed: " + cause);
 			}
 		}
 
+		if (failure != null && failed == this.providers.size())
+			throw failure;
+
 		//if no paths are valid, throw an exception
 		//if (oracleHomes.isEmpty())
 		//    throw new Exception("No valid oracle homes found");
 
+		if (onFound == null)
+			this.removeSharedTNSPaths();
 		return this.oracleHomes;
 	}
 
 
+	/**
+	 * The same home is often listed by more than one provider (the registry and the inventory, or ORACLE_HOME).
+	 * A home with a name that's already taken is dropped if it's the same dirs, otherwise it's kept under
+	 * its provider's name. Homes handed out as they're found claim their TNS dirs in the order they're found in
+	 */
+	private synchronized void addOracleHome(OracleHome oh, OracleHomeProvider provider, Consumer<OracleHome> onFound) {
+
+		OracleHome existing = this.oracleHomes.get(oh.getName());
+		if (existing != null) {
+			if (realPaths(existing.getTNSPaths()).equals(realPaths(oh.getTNSPaths())))
+				return;
+			oh.setName(oh.getName() + " [" + provider.getName() + "]");
+			if (this.oracleHomes.containsKey(oh.getName()))
+				return;
+		}
 
+		this.oracleHomes.put(oh.getName(), oh);
+		if (onFound != null) {
+			this.claimTNSPaths(oh);
+			onFound.accept(oh);
+		}
+	}
 
-	private List<String>  findOracleRegistryKeys() throws IOException, InterruptedException {
+	private static Set<Path> realPaths(List<String> paths) {
 
+		Set<Path> realPaths = new HashSet<>();
+		for (String path : paths)
+			realPaths.add(realPath(path));
+		return realPaths;
+	}
 
-		//this will return items like HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1
-		//we're only interested if they have KEY_
-		List<String> cmdRes;
 
-		Command cmd = new Command(this.parseCommand(cmdRegQuery + " " + oracleRegistryPath), oracleRegKeyPattern1);
-		cmdRes = cmd.execute();
-		if (!cmdRes.isEmpty())
-			this.oracleRegKeys.addAll(cmdRes);
+	/**
+	 * The same dir can be listed more than once: in a different case (c:\oracle vs C:\Oracle), for both
+	 * registry views, by more than one provider, or through a junction or symlink. Every TNS path is resolved
+	 * to the real dir it ends up in, and only the first path (by home name) to each real dir is kept for copying;
+	 * the others are marked as shared, so each dir is backed up and written once per run but still shows
+	 * under every home.
+	 */
+	private void removeSharedTNSPaths() {
 
+		List<String> homeNames = new ArrayList<>(this.oracleHomes.keySet());
+		Collections.sort(homeNames, String.CASE_INSENSITIVE_ORDER);
 
-		return this.oracleRegKeys;
+		for (String homeName : homeNames)
+			this.claimTNSPaths(this.oracleHomes.get(homeName));
 	}
 
+	private void claimTNSPaths(OracleHome oh) {
 
-	private String getOracleHomeNameFromRegKey(String registryKey) {
+		for (String tnsPath : new ArrayList<>(oh.getTNSPaths())) {
 
-		/*
-				let's get the actual ORACLE_HOME name, e.g.
-				for HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1, we need OraClient11g_home1
-				since split in Java accepts reg exprs only, we need 4 \ for one: see http://goo.gl/1VxIei
-		*/
-		String oracleRegKeyPieces[] = registryKey.split("\\\\");
-		String oracleHomeName = oracleRegKeyPieces[oracleRegKeyPieces.length - 1];
-		return oracleHomeName.replaceAll(oracleRegKeyPrefix, "");
+			Path realPath = realPath(tnsPath);
+			String owner = this.writtenAs.putIfAbsent(realPath, "[" + tnsPath + "] of [" + oh.getName() + "]");
+			if (owner != null)
+				oh.shareTNSPath(tnsPath, owner);
+		}
 	}
 
-	private List<String> getOracleHomePathsFromRegKey(String key) throws IOException, InterruptedException {
 
-		//sometimes the same oracle home can contain 2 dirs: one for 32 and one for 64 bit versions
-		//so that's why we'll build a list
-		List<String> homePaths = new ArrayList<>();
-
-		/*
-			The followingcommand passed will return the following itself, but with the pattern we passed, we'll get 2nd
-			line only, which is what we want
-
-			HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1
-			ORACLE_HOME    REG_SZ    c:\oracle\product\11.2.0\client_1
-		*/
-		Command cmd = new Command(this.parseCommand(cmdRegQuery + " " + key + " " + oracleHomeRegValueParams), oracleRegKeyPattern2);
-
-
-		String[] regValuePieces;
-		List<String> output = cmd.execute();
-		for (String oracleHomeRegOutputString : output) {
-			oracleHomeRegOutputString = oracleHomeRegOutputString.trim();
-			if (oracleHomeRegOutputString.isEmpty())
-				continue;
-
-			/*
-				oracleHomeRegOutputString has the following line:
+	/**
+	 * network\admin may not exist yet, so the longest part of the path that does exist is resolved,
+	 * and the rest appended to it
+	 */
+	private static Path realPath(String path) {
 
-				"ORACLE_HOME    REG_SZ    c:\oracle\product\11.2.0\client_1"
+		Path absolute = Paths.get(path).toAbsolutePath().normalize();
+		Path existing = absolute;
+		while (existing != null && !Files.exists(existing))
+			existing = existing.getParent();
 
-				We just need the last part with the path, so we'll split.
-			*/
-			regValuePieces =  oracleHomeRegOutputString.split("\\s+");
-			homePaths.add(regValuePieces[regValuePieces.length - 1]);
+		if (existing == null)
+			return absolute;
 
+		try {
+			return existing.toRealPath().resolve(existing.relativize(absolute));
+		} catch (IOException e) {
+			return absolute;
 		}
-
-		return homePaths;
 	}
 
-	private String parseCommand(String cmdString) {
-
-		if (this.is64bit)
-			cmdString = cmdString + " " + regCmd32bitSwitch + " & " + cmdString + " " + regCmd64bitSwitch;
 
-		return cmdString;
-
-	}
 
 
 }
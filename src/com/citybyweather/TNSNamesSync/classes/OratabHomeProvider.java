@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the homes listed in oratab, where every line is SID:ORACLE_HOME:Y|N. Only exists on Unix
+ */
+//@SuppressWarnings("unused")
+public class OratabHomeProvider implements OracleHomeProvider {
+
+	public static final String NAME = "oratab";
+
+
+	private static final String[] oratabFiles = { "/etc/oratab", "/var/opt/oracle/oratab" };
+
+	//used in place of a SID for homes with no database, e.g. a client or a grid home
+	private static final String noSid = "*";
+
+
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+
+	@Override
+	public void find(Consumer<OracleHome> onFound) throws Exception {
+
+		for (String oratab : oratabFiles) {
+			Path oratabPath = Paths.get(oratab);
+			if (!Files.isReadable(oratabPath))
+				continue;
+
+			for (Map.Entry<String, String> home : parseOratab(oratabPath).entrySet()) {
+				OracleHome oh = new OracleHome(home.getValue(), home.getKey());
+				if (oh.exists())
+					onFound.accept(oh);
+			}
+		}
+	}
+
+
+	/**
+	 * Several SIDs can run from the same home, so the lines are grouped by home. The home is named after
+	 * its first SID, or after its dir when it has none
+	 *
+	 * @param oratabPath  the oratab file
+	 * @return            key is the home path, value is its name
+	 * @throws IOException
+	 */
+	public static Map<String, String> parseOratab(Path oratabPath) throws IOException {
+
+		Map<String, String> homes = new LinkedHashMap<>();
+
+		for (String line : Files.readAllLines(oratabPath, StandardCharsets.ISO_8859_1)) {
+
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+
+			String[] pieces = line.split(":");
+			if (pieces.length < 2 || pieces[1].trim().isEmpty())
+				continue;
+
+			String sid = pieces[0].trim();
+			String home = pieces[1].trim();
+			if (sid.isEmpty() || sid.equals(noSid)) {
+				Path homeName = Paths.get(home).getFileName();
+				sid = homeName == null ? home : homeName.toString();
+			}
+
+			homes.putIfAbsent(home, sid);
+		}
+
+		return homes;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Parses the output of a recursive value query, i.e. "reg query HKLM\SOFTWARE\ORACLE /s /v ORACLE_HOME",
+ * which lists every matching key followed by its value:
+ *
+ *	HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1
+ *	    ORACLE_HOME    REG_SZ    c:\oracle\product\11.2.0\client_1
+ *
+ *	End of search: 1 match(es) found.
+ *
+ * When both registry views are queried, the output simply holds two such listings one after another.
+ */
+public class RecursiveRegQueryParser implements RegistryOutputParser {
+
+	private static final String registryKeyLinePrefix = "HKEY_";
+	private static final String oracleRegKeyPrefix = "KEY_";
+
+	//the path itself may contain spaces, so take everything after the type
+	private static final Pattern oracleHomeValuePattern =
+			Pattern.compile("^\\s*ORACLE_HOME\\s+REG_(?:EXPAND_)?SZ\\s+(.+?)\\s*$");
+
+
+	@Override
+	public Map<String, List<String>> parse(List<String> lines) {
+
+		Map<String, List<String>> oracleHomePaths = new LinkedHashMap<>();
+		String currentHomeName = null;
+
+		for (String line : lines) {
+
+			String trimmedLine = line.trim();
+			if (trimmedLine.startsWith(registryKeyLinePrefix)) {
+				currentHomeName = this.getOracleHomeName(trimmedLine);
+				continue;
+			}
+
+			//values that belong to keys other than KEY_* (e.g. the old HOME0 style keys) are skipped
+			if (currentHomeName == null)
+				continue;
+
+			Matcher m = oracleHomeValuePattern.matcher(trimmedLine);
+			if (!m.matches())
+				continue;
+
+			List<String> paths = oracleHomePaths.get(currentHomeName);
+			if (paths == null) {
+				paths = new ArrayList<>();
+				oracleHomePaths.put(currentHomeName, paths);
+			}
+
+			//the 32 and 64 bit views often point at the same dir
+			if (!paths.contains(m.group(1)))
+				paths.add(m.group(1));
+		}
+
+		return oracleHomePaths;
+	}
+
+
+	/**
+	 *
+	 * @param registryKey   e.g. HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1
+	 * @return              OraClient11g_home1, or null if the key is not a KEY_* key
+	 */
+	private String getOracleHomeName(String registryKey) {
+
+		String oracleRegKeyPieces[] = registryKey.split("\\\\");
+		String lastPiece = oracleRegKeyPieces[oracleRegKeyPieces.length - 1];
+
+		if (!lastPiece.startsWith(oracleRegKeyPrefix))
+			return null;
+
+		return lastPiece.substring(oracleRegKeyPrefix.length());
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the homes listed under HKLM\SOFTWARE\ORACLE, through "reg query" run by cmd.exe
+ */
+//@SuppressWarnings("unused")
+public class RegistryHomeProvider implements OracleHomeProvider {
+
+	public static final String NAME = "registry";
+
+
+	private static final String regCmd32bitSwitch = "/reg:32";
+	private static final String regCmd64bitSwitch = "/reg:64";
+
+	private static final String cmdRegQuery = "reg query";
+	private static final String oracleHomeRegValueParams = "/v ORACLE_HOME";
+	private static final String regQueryRecursiveSwitch = "/s";
+
+	private static final String oracleRegistryPath = "HKEY_LOCAL_MACHINE\\SOFTWARE\\ORACLE";
+	//private static final String oracleRegPath32 = "HKEY_LOCAL_MACHINE\\SOFTWARE\\Wow6432Node\\ORACLE";
+
+
+
+	private static final String oracleRegKeyPattern1 = "^.*\\\\KEY_.*$";
+	private static final String oracleRegKeyPattern2 = "^.*ORACLE_HOME.*$";
+
+	private static final String oracleRegKeyPrefix = "KEY_";
+
+	//a query for a single key is quick; the recursive query of the batch mode keeps Command's longer default
+	private static final long keyQueryTimeoutSeconds = 30;
+
+	private Boolean is64bit = false;
+	private Boolean batchDiscovery = false;
+	private RegistryOutputParser registryOutputParser = new RecursiveRegQueryParser();
+
+
+
+	public RegistryHomeProvider() {
+
+		//if it's a 64 bit system, we'll need both the 64 and 32 bit registry queries
+		this.is64bit = this.isOS64Bit();
+
+	}
+
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+
+	/**
+	 * Courtesy of http://stackoverflow.com/questions/1856565/how-do-you-determine-32-or-64-bit-architecture-of-windows-using-java
+	 * Determine if the OS 64 bit
+	 * @return boolean true is 64 bit
+	 */
+	private Boolean isOS64Bit() {
+		Boolean is64bit;
+
+		if (System.getProperty("os.name").contains("Windows"))
+			is64bit = (System.getenv("ProgramFiles(x86)") != null);
+		else
+			is64bit = (System.getProperty("os.arch").contains("64"));
+
+		return is64bit;
+	}
+
+
+	/**
+	 * In batch mode, all of the ORACLE_HOME values are read with a single recursive query per registry view
+	 * instead of one query for the keys plus one more for every KEY_* key found
+	 */
+	public void setBatchDiscovery(Boolean batchDiscovery) {
+		this.batchDiscovery = batchDiscovery;
+	}
+
+	public void setRegistryOutputParser(RegistryOutputParser registryOutputParser) {
+		this.registryOutputParser = registryOutputParser;
+	}
+
+
+	@Override
+	public void find(Consumer<OracleHome> onFound) throws Exception {
+
+		if (this.batchDiscovery) {
+			this.findBatched(onFound);
+			return;
+		}
+
+		OracleHome oh;
+		String oracleHomeName;
+		List<String> oracleHomeValues;
+
+		//for each of the oracle home registry keys, find the oracle home name and path
+		for (String oracleRegKey : this.findOracleRegistryKeys()) {
+
+			oracleHomeName = this.getOracleHomeNameFromRegKey(oracleRegKey);
+			oracleHomeValues = this.getOracleHomePathsFromRegKey(oracleRegKey);
+
+
+			oh = new OracleHome(oracleHomeName, oracleHomeValues);
+			if (oh.exists())
+				onFound.accept(oh);
+		}
+	}
+
+
+	private void findBatched(Consumer<OracleHome> onFound) throws IOException, InterruptedException {
+
+		/*
+			Both views are chained into the one cmd.exe call by parseCommand, so the whole discovery
+			is a single process. The parser needs every line (key lines included), hence no pattern and no dedup
+		*/
+		Command cmd = new Command(this.parseCommand(cmdRegQuery + " " + oracleRegistryPath + " "
+				+ regQueryRecursiveSwitch + " " + oracleHomeRegValueParams));
+		cmd.setDistinct(false);
+
+		List<String> output = cmd.execute();
+		checkFailed(cmd, !output.isEmpty());
+
+		Map<String, List<String>> oracleHomePaths = this.registryOutputParser.parse(output);
+		for (Map.Entry<String, List<String>> oracleHomePath : oracleHomePaths.entrySet()) {
+
+			OracleHome oh = new OracleHome(oracleHomePath.getKey(), oracleHomePath.getValue());
+			if (oh.exists())
+				onFound.accept(oh);
+		}
+	}
+
+
+	private List<String>  findOracleRegistryKeys() throws IOException, InterruptedException {
+
+
+		//this will return items like HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1
+		//we're only interested if they have KEY_
+		List<String> oracleRegKeys = new ArrayList<>();
+
+		Command cmd = new Command(this.parseCommand(cmdRegQuery + " " + oracleRegistryPath), oracleRegKeyPattern1);
+		cmd.setTimeout(keyQueryTimeoutSeconds, TimeUnit.SECONDS);
+		oracleRegKeys.addAll(cmd.execute());
+		checkFailed(cmd, !oracleRegKeys.isEmpty());
+
+
+		return oracleRegKeys;
+	}
+
+
+	private String getOracleHomeNameFromRegKey(String registryKey) {
+
+		/*
+				let's get the actual ORACLE_HOME name, e.g.
+				for HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1, we need OraClient11g_home1
+				since split in Java accepts reg exprs only, we need 4 \ for one: see http://goo.gl/1VxIei
+		*/
+		String oracleRegKeyPieces[] = registryKey.split("\\\\");
+		String oracleHomeName = oracleRegKeyPieces[oracleRegKeyPieces.length - 1];
+		return oracleHomeName.replaceAll(oracleRegKeyPrefix, "");
+	}
+
+	private List<String> getOracleHomePathsFromRegKey(String key) throws IOException, InterruptedException {
+
+		//sometimes the same oracle home can contain 2 dirs: one for 32 and one for 64 bit versions
+		//so that's why we'll build a list
+		List<String> homePaths = new ArrayList<>();
+
+		/*
+			The followingcommand passed will return the following itself, but with the pattern we passed, we'll get 2nd
+			line only, which is what we want
+
+			HKEY_LOCAL_MACHINE\SOFTWARE\ORACLE\KEY_OraClient11g_home1
+			ORACLE_HOME    REG_SZ    c:\oracle\product\11.2.0\client_1
+		*/
+		Command cmd = new Command(this.parseCommand(cmdRegQuery + " " + key + " " + oracleHomeRegValueParams), oracleRegKeyPattern2);
+		cmd.setTimeout(keyQueryTimeoutSeconds, TimeUnit.SECONDS);
+
+		//each line is parsed as it's read; execute only returns once the output has been drained
+		cmd.execute(oracleHomeRegOutputString -> {
+			if (oracleHomeRegOutputString.isEmpty())
+				return;
+
+			/*
+				oracleHomeRegOutputString has the following line:
+
+				"ORACLE_HOME    REG_SZ    c:\oracle\product\11.2.0\client_1"
+
+				We just need the last part with the path, so we'll split.
+			*/
+			String[] regValuePieces = oracleHomeRegOutputString.split("\\s+");
+			homePaths.add(regValuePieces[regValuePieces.length - 1]);
+		});
+
+		//e.g. a KEY_* key without an ORACLE_HOME value; the home is left out, but the reason is worth showing
+		if (homePaths.isEmpty() && cmd.getExitValue() != 0)
+			System.out.println("Warning: " + describeFailure(cmd, key));
+
+		return homePaths;
+	}
+
+
+	/**
+	 * reg.exe reports a missing key on stderr, with a non-zero exit code. With both registry views queried, the exit
+	 * code is the second query's, so a query only failed if it didn't print anything either
+	 */
+	private static void checkFailed(Command cmd, Boolean anyOutput) throws IOException {
+
+		if (cmd.getExitValue() != 0 && !anyOutput)
+			throw new IOException(describeFailure(cmd, oracleRegistryPath));
+	}
+
+	private static String describeFailure(Command cmd, String key) {
+		return "reg query of [" + key + "] failed with exit code " + cmd.getExitValue() + ": "
+				+ String.join(" ", cmd.getErrorOutput());
+	}
+
+	private String parseCommand(String cmdString) {
+
+		if (this.is64bit)
+			cmdString = cmdString + " " + regCmd32bitSwitch + " & " + cmdString + " " + regCmd64bitSwitch;
+
+		return cmdString;
+
+	}
+
+
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+
+/**
+ * Which backups to keep when pruning. A backup is kept if any of the enabled rules keeps it;
+ * with no rule enabled, nothing is pruned.
+ */
+public class RetentionPolicy {
+
+	private Integer keepLast;
+	private Integer keepDays;
+	private Boolean keepOnePerContent = false;
+
+
+	public RetentionPolicy() {}
+
+
+	public Boolean isEnabled() {
+		return this.keepLast != null || this.keepDays != null || this.keepOnePerContent;
+	}
+
+	public Integer getKeepLast() {
+		return this.keepLast;
+	}
+
+	//keep the newest N backups of each destination
+	public void setKeepLast(Integer keepLast) {
+		this.keepLast = keepLast;
+	}
+
+	public Integer getKeepDays() {
+		return this.keepDays;
+	}
+
+	//keep every backup taken within the last D days
+	public void setKeepDays(Integer keepDays) {
+		this.keepDays = keepDays;
+	}
+
+	public Boolean getKeepOnePerContent() {
+		return this.keepOnePerContent;
+	}
+
+	//keep the newest backup of every distinct content of each destination
+	public void setKeepOnePerContent(Boolean keepOnePerContent) {
+		this.keepOnePerContent = keepOnePerContent;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+
+
+/**
+ * Restores one file of one TNS path from the backup catalog. The result is kept on the task
+ * so that all of the results can be printed as a table once every restore is done.
+ */
+public class RollbackTask implements Callable<RollbackTask> {
+
+	private final String homeName;
+	private final String fileName;
+	private final String tnsPath;
+	private final String timeStamp;
+	private final BackupCatalog catalog;
+	private final CopySettings settings;
+
+	private BackupCatalog.Entry backup;
+	private String result;
+
+
+	/**
+	 *
+	 * @param homeName  the oracle home the TNS path belongs to; only used for reporting
+	 * @param fileName  the file to restore, e.g. tnsnames.ora
+	 * @param tnsPath   the directory to restore into, including network\admin
+	 * @param timeStamp restore the newest backup taken at or before this time; null for the newest backup
+	 * @param catalog   where to look the backup up
+	 * @param settings  how to write the restored file; the same as for a sync
+	 */
+	public RollbackTask(String homeName, String fileName, String tnsPath, String timeStamp,
+	                    BackupCatalog catalog, CopySettings settings) {
+		this.homeName = homeName;
+		this.fileName = fileName;
+		this.tnsPath = tnsPath;
+		this.timeStamp = timeStamp;
+		this.catalog = catalog;
+		this.settings = settings;
+	}
+
+
+	@Override
+	public RollbackTask call() {
+
+		Path destination = Paths.get(this.tnsPath + this.fileName);
+		this.backup = this.catalog.find(destination, this.timeStamp);
+
+		if (this.backup == null) {
+			this.result = "no backup found";
+			return this;
+		}
+
+		try {
+			SimpleFile file = new SimpleFile(this.fileName, this.tnsPath);
+			CopyResult restored = file.restore(this.tnsPath, SourceContent.load(Paths.get(this.backup.getBackupPath())),
+					this.settings);
+			this.result = restored.isSkipped() ? "already current" : "restored";
+
+		} catch (IOException e) {
+			this.result = "failed: " + e.getMessage();
+		}
+
+		return this;
+	}
+
+
+	public String getHomeName() {
+		return this.homeName;
+	}
+
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	public String getTnsPath() {
+		return this.tnsPath;
+	}
+
+	//null if no backup was found
+	public BackupCatalog.Entry getBackup() {
+		return this.backup;
+	}
+
+	public String getResult() {
+		return this.result;
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A write-ahead journal of the copies of a run, so a run that's killed part way (e.g. by a scheduled task's
+ * time limit) can be resumed by the next one. Before each step of a copy a record is added: PLAN before anything
+ * is done to the destination, BACKUP once it's backed up, STAGE once the new content is in a temp file next to it,
+ * SWAP once the new content is in place and DONE at the end. A run that finishes deletes the journal, so a journal
+ * that's still there at the start of a run is from a run that was interrupted:
+ * - destinations with DONE for the same source content are skipped without being looked at
+ * - unfinished destinations are done again, without another backup if one was taken (the destination may be
+ *   half written by then), and their leftover temp file is deleted
+ *
+ * Records are written in batches, when BATCH_SIZE of them are waiting or FLUSH_INTERVAL_MILLIS has passed since
+ * the last write, each batch with a single sync to disk. A crash loses at most the last batch, which only means
+ * those copies are done again: every step can be redone safely.
+ *
+ * The journal is a tab separated text file, one record per line:
+ *	record type, destination path, then the source hash (PLAN, DONE) or the backup / temp file path (BACKUP, STAGE)
+ */
+public class RunJournal {
+
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final int BATCH_SIZE = 64;
+	private static final long FLUSH_INTERVAL_MILLIS = 250;
+
+	private static final String RUN = "RUN";
+	private static final String PLAN = "PLAN";
+	private static final String BACKUP = "BACKUP";
+	private static final String STAGE = "STAGE";
+	private static final String SWAP = "SWAP";
+	private static final String DONE = "DONE";
+
+	private final Path journalPath;
+	//what the interrupted run got done, by destination path
+	private final Map<String, Entry> interrupted = new HashMap<>();
+	private String interruptedRunStarted;
+	private Integer staleFilesDeleted = 0;
+
+	private FileChannel channel;
+	private final StringBuilder pending = new StringBuilder();
+	private int pendingRecords = 0;
+	private long lastFlushNanos;
+
+	private long records = 0;
+	private long flushes = 0;
+	private long nanos = 0;
+	private IOException error;
+
+
+	public RunJournal(Path journalPath) {
+		this.journalPath = journalPath;
+	}
+
+
+	/**
+	 * Reads what's left of an interrupted run, deletes the temp files its unfinished copies left behind,
+	 * and starts this run's records. The interrupted run's records are kept until this run finishes,
+	 * so being interrupted again doesn't lose them
+	 */
+	public synchronized void open() throws IOException {
+
+		this.interrupted.clear();
+		if (Files.exists(this.journalPath)) {
+			for (String line : Files.readAllLines(this.journalPath, StandardCharsets.UTF_8))
+				this.replay(line.split(FIELD_SEPARATOR));
+			this.deleteStaleFiles();
+		} else
+			Files.createDirectories(this.journalPath.getParent());
+
+		this.channel = FileChannel.open(this.journalPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+				StandardOpenOption.WRITE);
+		this.lastFlushNanos = System.nanoTime();
+		this.append(RUN, LocalDateTime.now().format(BackupCatalog.TIMESTAMP_FORMAT), null);
+	}
+
+
+	private void replay(String[] fields) {
+
+		//a line cut short by the crash is just left out
+		int expectedFields = fields[0].equals(RUN) || fields[0].equals(SWAP) ? 2 : 3;
+		if (fields.length < expectedFields)
+			return;
+		if (fields[0].equals(RUN)) {
+			if (this.interruptedRunStarted == null)
+				this.interruptedRunStarted = fields[1];
+			return;
+		}
+
+		//the records of a copy always start with its PLAN
+		Entry entry = this.interrupted.get(fields[1]);
+		if (entry == null && fields[0].equals(PLAN)) {
+			entry = new Entry();
+			this.interrupted.put(fields[1], entry);
+		}
+		if (entry == null)
+			return;
+		switch (fields[0]) {
+			case PLAN:
+				//a resumed copy keeps the backup its first attempt took, a new copy of a done destination doesn't
+				if (entry.done)
+					entry.backupPath = null;
+				entry.sourceHash = fields[2];
+				entry.done = false;
+				break;
+			case BACKUP:
+				entry.backupPath = fields[2];
+				break;
+			case STAGE:
+				entry.stagedPath = fields[2];
+				break;
+			case SWAP:
+				entry.stagedPath = null;
+				break;
+			case DONE:
+				entry.sourceHash = fields[2];
+				entry.done = true;
+				entry.stagedPath = null;
+				break;
+		}
+	}
+
+
+	private void deleteStaleFiles() {
+
+		for (Entry entry : this.interrupted.values()) {
+			if (entry.stagedPath == null)
+				continue;
+			try {
+				if (Files.deleteIfExists(Paths.get(entry.stagedPath)))
+					this.staleFilesDeleted++;
+			} catch (IOException e) {
+				System.out.println("Temp file [" + entry.stagedPath + "] of the interrupted run can't be deleted: " + e.getMessage());
+			}
+			entry.stagedPath = null;
+		}
+	}
+
+
+	/**
+	 * Writes what's still waiting and closes the journal
+	 *
+	 * @param finished  true if the run went through to the end; the journal is then deleted,
+	 *                  otherwise the next run resumes from it
+	 */
+	public synchronized void close(Boolean finished) throws IOException {
+
+		if (this.channel == null)
+			return;
+
+		long started = System.nanoTime();
+		this.flush();
+		this.nanos += System.nanoTime() - started;
+		this.channel.close();
+		this.channel = null;
+
+		if (finished)
+			Files.deleteIfExists(this.journalPath);
+	}
+
+
+	/**
+	 *
+	 * @param destination  the destination file
+	 * @param sourceHash   hash of the source that's being synced to it
+	 * @return             true if the interrupted run already synced this source to this destination
+	 */
+	public Boolean isDone(String destination, String sourceHash) {
+		Entry entry = this.interrupted.get(destination);
+		return entry != null && entry.done && sourceHash.equals(entry.sourceHash);
+	}
+
+	/**
+	 *
+	 * @param destination  the destination file
+	 * @return             true if the interrupted run backed the destination up but didn't finish it, so
+	 *                     what's there now may be half written and mustn't be backed up again
+	 */
+	public Boolean isBackedUp(String destination) {
+		Entry entry = this.interrupted.get(destination);
+		return entry != null && !entry.done && entry.backupPath != null;
+	}
+
+
+	public void planned(String destination, String sourceHash) {
+		this.append(PLAN, destination, sourceHash);
+	}
+
+	public void backedUp(String destination, String backupPath) {
+		this.append(BACKUP, destination, backupPath);
+	}
+
+	public void staged(String destination, String stagedPath) {
+		this.append(STAGE, destination, stagedPath);
+	}
+
+	public void swapped(String destination) {
+		this.append(SWAP, destination, null);
+	}
+
+	public void done(String destination, String sourceHash) {
+		this.append(DONE, destination, sourceHash);
+	}
+
+
+	/**
+	 * A journal that can't be written only costs the ability to resume, so the copies go on without it
+	 */
+	private synchronized void append(String type, String destination, String value) {
+
+		if (this.channel == null || this.error != null)
+			return;
+
+		long started = System.nanoTime();
+		this.pending.append(type).append(FIELD_SEPARATOR).append(destination);
+		if (value != null)
+			this.pending.append(FIELD_SEPARATOR).append(value);
+		this.pending.append('\n');
+		this.pendingRecords++;
+		this.records++;
+
+		if (this.pendingRecords >= BATCH_SIZE
+				|| started - this.lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS)) {
+			try {
+				this.flush();
+			} catch (IOException e) {
+				this.error = e;
+				System.out.println("Run journal [" + this.journalPath + "] can't be written, the run can't be resumed: " + e.getMessage());
+			}
+		}
+
+		this.nanos += System.nanoTime() - started;
+	}
+
+	private void flush() throws IOException {
+
+		if (this.pendingRecords == 0)
+			return;
+
+		ByteBuffer buffer = ByteBuffer.wrap(this.pending.toString().getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining())
+			this.channel.write(buffer);
+		this.channel.force(false);
+
+		this.pending.setLength(0);
+		this.pendingRecords = 0;
+		this.flushes++;
+		this.lastFlushNanos = System.nanoTime();
+	}
+
+
+	public Path getJournalPath() {
+		return this.journalPath;
+	}
+
+	//null if the last run wasn't interrupted
+	public String getInterruptedRunStarted() {
+		return this.interruptedRunStarted;
+	}
+
+	public synchronized int getInterruptedDone() {
+		int done = 0;
+		for (Entry entry : this.interrupted.values())
+			if (entry.done)
+				done++;
+		return done;
+	}
+
+	public synchronized int getInterruptedUnfinished() {
+		return this.interrupted.size() - this.getInterruptedDone();
+	}
+
+	public Integer getStaleFilesDeleted() {
+		return this.staleFilesDeleted;
+	}
+
+	public synchronized long getRecords() {
+		return this.records;
+	}
+
+	public synchronized long getFlushes() {
+		return this.flushes;
+	}
+
+	//time spent adding records and writing them out, including the syncs to disk
+	public synchronized long getNanos() {
+		return this.nanos;
+	}
+
+
+
+	private static class Entry {
+
+		private String sourceHash;
+		private String backupPath;
+		private String stagedPath;
+		private Boolean done = false;
+	}
+}
@@ -24,61 +24,80 @@
 
 package com.citybyweather.TNSNamesSync.classes;
 
+import com.citybyweather.TNSNamesSync.exceptions.InvalidSourceFilesException;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesCompactor;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesFlattener;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesIndex;
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesMerger;
+
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.file.*;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 
+/**
+ * A file and the content read from it. Nothing about a copy is kept on the file, every copy returns its own
+ * CopyResult, so one instance can be copied to any number of destinations from any number of threads at once
+ */
 //@SuppressWarnings({"FieldCanBeLocal", "unused", "WeakerAccess"})
 public class SimpleFile {
 
-	private String name;
-	private String pathNoName;
-	private String fullPath;
-	private Path pathAsPathType;
-	private Boolean exists;
-	private String lastModified;
+	private final String name;
+	private final String pathNoName;
+	private final Path pathAsPathType;
+	private volatile Boolean exists;
+	private final String lastModified;
 
-	private final String DIR_SEPARATOR = "\\\\";
-	private final String BACKUP_FILE_EXTENSION = ".bak";
+	private static final Boolean DOS_ATTRIBUTES = File.separatorChar == '\\'
+			&& FileSystems.getDefault().supportedFileAttributeViews().contains("dos");
 
-	private final DateFormat dateOutputFormat;
-	private final DateFormat dateInputFormat;
+	private static final String BACKUP_FILE_EXTENSION = ".bak";
+	private static final String STAGED_FILE_EXTENSION = ".tmp";
 
-	private final CopyOption[] copyOptions;
-	private String backupDestinationPath;
-	private Boolean backupCreatedLastCopy = false;
+	//DateTimeFormatter is immutable, so one is shared by every file and thread
+	private static final DateTimeFormatter LAST_MODIFIED_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss")
+			.withZone(ZoneId.of("America/New_York"));
 
+	private static final CopyOption[] COPY_OPTIONS = new CopyOption[] {
+			StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.COPY_ATTRIBUTES
+	};
 
-	public SimpleFile() {
+	//read on the first copy, then reused for every other destination
+	private volatile SourceContent content;
+	private volatile TnsNamesIndex tnsNamesIndex;
 
-		this.exists = false;
-
-		dateOutputFormat = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
-		dateInputFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-		dateInputFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-		dateOutputFormat.setTimeZone(TimeZone.getTimeZone("America/New_York"));
 
+	public SimpleFile(String name, String pathNoName) throws IOException {
+		this.name = name;
+		this.pathNoName = pathNoName;
+		this.pathAsPathType = Paths.get(this.pathNoName, this.name);
 
-		copyOptions = new CopyOption[] {
-				StandardCopyOption.REPLACE_EXISTING,
-				StandardCopyOption.COPY_ATTRIBUTES
-		};
+		//one stat for both
+		BasicFileAttributes attributes = FileMetadata.getInstance().get(this.pathAsPathType);
+		this.exists = attributes != null;
+		this.lastModified = this.exists ? formatLastModified(attributes.lastModifiedTime()) : null;
 	}
 
 
-	public SimpleFile(String name, String pathNoName) throws IOException, ParseException {
-		this();
+	/**
+	 * For a file found by listing a dir, with the attributes the listing read, so it's not stat'ed again
+	 */
+	public SimpleFile(String name, String pathNoName, BasicFileAttributes attributes) {
 		this.name = name;
 		this.pathNoName = pathNoName;
+		this.pathAsPathType = Paths.get(this.pathNoName, this.name);
+		FileMetadata.getInstance().put(this.pathAsPathType, attributes);
 
-		this.findAndCapture();
+		this.exists = true;
+		this.lastModified = formatLastModified(attributes.lastModifiedTime());
 	}
 
 
@@ -86,152 +105,494 @@ public class SimpleFile {
 		return name;
 	}
 
-	public void setName(String name) throws Exception {
-		this.name = name;
-		if (this.pathNoName != null) {
-			this.setFullPath(this.pathNoName + this.name);
-			this.findAndCapture();
-		}
-	}
-
 	public String getPathNoName() {
 		return pathNoName;
 	}
 
-	public void setPathNoName(String pathNoName) throws Exception {
-
-
-		if  (!pathNoName.substring(pathNoName.length() - 1).equals(DIR_SEPARATOR))
-			pathNoName += DIR_SEPARATOR;
+	public String getFullPath() {
+		return this.pathAsPathType.toString();
+	}
 
+	public Path getPathAsPathType() {
+		return pathAsPathType;
+	}
 
-		this.pathNoName = pathNoName;
+	public Boolean exists() {
 
-		if (this.name != null) {
-		   this.fullPath = this.pathNoName + this.name;
-		   this.findAndCapture();
-		}
+		this.exists = FileMetadata.getInstance().exists(this.pathAsPathType);
+		return exists;
 	}
 
-	public String getFullPath() {
-		return fullPath;
+	public String getLastModified() {
+		return this.lastModified;
 	}
 
-	public void setFullPath(String fullPath) throws Exception {
-		this.fullPath = fullPath;
-		this.splitPathAndSet(this.fullPath);
-		this.findAndCapture();
+	private static String formatLastModified(FileTime lastModifiedTime) {
+		return LAST_MODIFIED_FORMAT.format(lastModifiedTime.toInstant());
 	}
 
 
-	public Path getPathAsPathType() {
-		return pathAsPathType;
+	public CopyResult copy(String destinationPathNoName, Boolean createBackup) throws IOException {
+		CopySettings settings = new CopySettings();
+		settings.setCreateBackup(createBackup);
+		return this.copy(destinationPathNoName, settings);
 	}
 
-	public void setPathAsPathType(Path pathAsPathType) throws Exception {
-		this.pathAsPathType = pathAsPathType;
 
-		this.splitPathAndSet(this.pathAsPathType.toString());
+	/**
+	 *
+	 * @param destinationPathNoName the directory to copy into
+	 * @param settings              backup, skip-if-same, atomic write and ledger settings
+	 * @return                      whether the destination was written or left alone, and where it was backed up to
+	 * @throws IOException
+	 */
+	public CopyResult copy(String destinationPathNoName, CopySettings settings) throws IOException {
+		return this.copy(destinationPathNoName, settings, this.getContent(), settings.getOnlyIfDifferent());
 	}
 
-	public Boolean exists() {
 
-		this.setExists();
-		return exists;
+	/**
+	 * Puts earlier content (e.g. a backup) back into the destination, going through the same steps as a copy:
+	 * the current file is backed up, and with atomic settings the content is swapped in with a rename
+	 *
+	 * @param destinationPathNoName the directory to restore into
+	 * @param content               the content to restore
+	 * @param settings              same as for copy
+	 * @return                      same as for copy
+	 * @throws IOException
+	 */
+	public CopyResult restore(String destinationPathNoName, SourceContent content, CopySettings settings) throws IOException {
+		return this.copy(destinationPathNoName, settings, content, settings.getOnlyIfDifferent());
 	}
 
-	private void setExists() {
-		this.exists = Files.exists(this.pathAsPathType);
-	}
 
-	private void createPathType() {
-		this.pathAsPathType = Paths.get(this.pathNoName, this.name);
+	/**
+	 * Merges this file (a tnsnames.ora) into the destination one alias by alias, keeping the destination's
+	 * local entries, and writes the result the same way as a copy, only if it differs from what's there.
+	 *
+	 * @param destinationPathNoName the directory to merge into
+	 * @param settings              same as for copy
+	 * @return                      same as for copy, along with what the merge added, changed, removed and kept
+	 * @throws IOException
+	 */
+	public CopyResult merge(String destinationPathNoName, CopySettings settings) throws IOException {
+
+		TnsNamesMerger.MergeResult result = this.mergeInto(Paths.get(destinationPathNoName + this.name));
+
+		SourceContent merged = this.getContent().withContent(result.getText().getBytes(TnsNamesIndex.CHARSET));
+		//the merge already read the destination, so it's always worth checking whether anything changed
+		return this.copy(destinationPathNoName, settings, merged, true).withMergeResult(result);
 	}
 
-	private void splitPathAndSet(String path) throws Exception {
 
-		String escapedDirSeparator = Pattern.quote(DIR_SEPARATOR);
-		Pattern p = Pattern.compile("(.*" + escapedDirSeparator + ")([^" + escapedDirSeparator + "]+)$");
-		Matcher m = p.matcher(path);
-		if (!m.find())
-			throw new Exception("Can't get the path figured out");
+	/**
+	 * The checks a copy makes before it writes anything, on their own, so they can be made before the destination
+	 * dir is locked: in most runs nothing has changed, and then the dir doesn't need a lock at all.
+	 * A copy made after this still checks again, as another run may have written the file in between
+	 *
+	 * @param destinationPathNoName the directory to copy into
+	 * @param settings              same as for copy
+	 * @return                      a skipped result if the destination already has this content, null if a copy
+	 *                              would write it
+	 * @throws IOException
+	 */
+	public CopyResult checkUpToDate(String destinationPathNoName, CopySettings settings) throws IOException {
 
-		this.pathNoName = m.group(1);
-		this.name = m.group(2);
+		if (!settings.getOnlyIfDifferent())
+			return null;
 
+		return this.checkUpToDate(destinationPathNoName, settings, this.getContent(), System.nanoTime());
 	}
 
-	public String getLastModified() {
-		return this.lastModified;
+	/**
+	 * Same as checkUpToDate, for a merge: the destination is up to date if merging into it changes nothing.
+	 * Throws the same exception as merge if the destination has errors
+	 */
+	public CopyResult checkMergedUpToDate(String destinationPathNoName) throws IOException {
+
+		long start = System.nanoTime();
+		Path destination = Paths.get(destinationPathNoName + this.name);
+		TnsNamesMerger.MergeResult result = this.mergeInto(destination);
+
+		SourceContent merged = this.getContent().withContent(result.getText().getBytes(TnsNamesIndex.CHARSET));
+		if (!sameContent(merged, destination))
+			return null;
+
+		return new CopyResult(destination, null, 0, System.nanoTime() - start, true, result);
 	}
 
-	private void setLastModified() throws IOException, ParseException {
 
-		Date date = dateInputFormat.parse(Files.getLastModifiedTime(this.pathAsPathType).toString());
-		this.lastModified = dateOutputFormat.format(date);
+	private TnsNamesMerger.MergeResult mergeInto(Path destination) throws IOException {
+
+		String destinationText = FileMetadata.getInstance().exists(destination)
+				? new String(Files.readAllBytes(destination), TnsNamesIndex.CHARSET) : "";
+
+		return TnsNamesMerger.merge(this.getTnsNamesIndex(), this.getContent().asString(TnsNamesIndex.CHARSET),
+				TnsNamesIndex.build(new StringReader(destinationText)), destinationText);
 	}
 
-	private void findAndCapture() throws IOException, ParseException {
-		this.createPathType();
-		this.setExists();
-		if (this.exists())
-			this.setLastModified();
 
+	private CopyResult checkUpToDate(String destinationPathNoName, CopySettings settings, SourceContent sourceContent,
+	                                 long start) throws IOException {
+
+		Path fullDestinationPathAsPath = Paths.get(destinationPathNoName + this.name);
+		String sourceHash = sourceContent.getHash();
+		SyncLedger ledger = settings.getLedger();
+
+		if (ledger != null && ledger.isUpToDate(fullDestinationPathAsPath, sourceHash))
+			return new CopyResult(fullDestinationPathAsPath, null, 0, System.nanoTime() - start, true, null);
+
+		if (this.sameContent(sourceContent, fullDestinationPathAsPath, destinationPathNoName, settings)) {
+			if (ledger != null)
+				ledger.record(fullDestinationPathAsPath, sourceHash);
+			return new CopyResult(fullDestinationPathAsPath, null, 0, System.nanoTime() - start, true, null);
+		}
+
+		return null;
 	}
 
 
-	public void copy(String destinationPathNoName, Boolean createBackup) throws IOException {
+	private CopyResult copy(String destinationPathNoName, CopySettings settings, SourceContent sourceContent,
+	                        Boolean onlyIfDifferent) throws IOException {
 
+		long start = System.nanoTime();
 		String fullDestinationPath = destinationPathNoName + this.name;
+		Path fullDestinationPathAsPath = Paths.get(fullDestinationPath);
+		String sourceHash = sourceContent.getHash();
+		SyncLedger ledger = settings.getLedger();
+
+		if (onlyIfDifferent) {
+			CopyResult upToDate = this.checkUpToDate(destinationPathNoName, settings, sourceContent, start);
+			if (upToDate != null)
+				return upToDate;
+		}
 
 		//clear the directory readonly attribute
-		Files.setAttribute(Paths.get(destinationPathNoName), "dos:readonly", false);
+		clearReadOnly(Paths.get(destinationPathNoName));
 
-		Path fullDestinationPathAsPath = Paths.get(fullDestinationPath);
+		RunJournal journal = settings.getJournal();
 
+		//a copy the interrupted run started may have left the destination half written, that's not worth a backup
+		Boolean createBackup = settings.getCreateBackup()
+				&& (journal == null || !journal.isBackedUp(fullDestinationPathAsPath.toString()));
+
+		//a file from a tree sync may go into a sub dir
+		if (Paths.get(this.name).getParent() != null)
+			Files.createDirectories(fullDestinationPathAsPath.getParent());
+
+		Path backupPath = null;
 		try {
-			if (createBackup)
-				createBackup(destinationPathNoName);
-		} catch (IOException e) {
+			if (settings.getAtomic())
+				backupPath = this.replaceAtomically(sourceContent, fullDestinationPathAsPath, settings, createBackup);
+			else {
+				try {
+					if (createBackup && settings.getBackupStore() != null)
+						backupPath = backUpToStore(fullDestinationPathAsPath, settings, false);
+					else if (createBackup)
+						backupPath = this.createBackup(destinationPathNoName, settings);
+				} catch (IOException e) {
+
+					System.out.println("Error occurred trying to back up file into: [" + destinationPathNoName + "]");
+
+					throw e;
+				}
+
+				sourceContent.writeTo(fullDestinationPathAsPath);
+				if (journal != null)
+					journal.swapped(fullDestinationPathAsPath.toString());
+			}
+		} finally {
+			//whatever got as far as the destination, its snapshot is out of date
+			FileMetadata.getInstance().invalidate(fullDestinationPathAsPath);
+		}
 
-			System.out.println("Error occurred trying to back up file into: [" + destinationPathNoName + "]");
+		if (ledger != null)
+			ledger.record(fullDestinationPathAsPath, sourceHash);
 
-			throw e;
+		return new CopyResult(fullDestinationPathAsPath, backupPath, sourceContent.getSize(), System.nanoTime() - start,
+				false, null);
+	}
+
+
+	/**
+	 * Writes the new content to a temp file in the destination dir and syncs it to disk. Then the live file
+	 * becomes the backup and the temp file is moved over it in one step, so a reader never sees a half written file.
+	 *
+	 * The backup is a hard link to the live file where possible, so the destination name never disappears and
+	 * no bytes are copied. Where links aren't supported, the live file is renamed to the backup name instead.
+	 * With a backup store, the backup goes into the store instead.
+	 *
+	 * The temp file is created readable by its owner only, so it's given the live file's permissions (or the
+	 * source's, if there's no live file yet) before it takes the live file's place.
+	 *
+	 * @return  where the live file was backed up to, null if it wasn't
+	 */
+	private Path replaceAtomically(SourceContent sourceContent, Path destination, CopySettings settings,
+	                               Boolean createBackup) throws IOException {
+
+		Path stagedPath = Files.createTempFile(destination.getParent(), this.name + ".", STAGED_FILE_EXTENSION);
+		if (settings.getJournal() != null)
+			settings.getJournal().staged(destination.toString(), stagedPath.toString());
+
+		Path backupPath = null;
+		BasicFileAttributes destinationAttributes = FileMetadata.getInstance().getWithPermissions(destination);
+		Boolean destinationExists = destinationAttributes != null;
+		try {
+			sourceContent.writeTo(stagedPath, true);
+			if (destinationExists)
+				SourceContent.copyPermissions(destinationAttributes, stagedPath);
+
+			//the live file is replaced by a rename below, so the store may link to it rather than copy it
+			if (createBackup && settings.getBackupStore() != null)
+				backupPath = backUpToStore(destination, settings, true);
+
+			else if (createBackup && destinationExists) {
+
+				String timeStamp = newBackupTimeStamp();
+				String knownHash = getRecordedHash(settings, destination);
+				backupPath = newBackupPath(destination, timeStamp);
+				try {
+					Files.createLink(backupPath, destination);
+				} catch (FileAlreadyExistsException e) {
+					//the name was free a moment ago, so something else is backing this file up; don't fall back
+					throw e;
+				} catch (UnsupportedOperationException | IOException e) {
+					Files.move(destination, backupPath);
+					destinationExists = false;
+				}
+
+				recordBackup(settings, timeStamp, destination, backupPath, knownHash);
+			}
+
+			//the rename won't replace a read-only file
+			if (destinationExists)
+				clearReadOnly(destination);
+
+			try {
+				Files.move(stagedPath, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(stagedPath, destination, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (settings.getJournal() != null)
+				settings.getJournal().swapped(destination.toString());
+
+		} finally {
+			Files.deleteIfExists(stagedPath);
 		}
 
-		Files.copy(this.pathAsPathType, fullDestinationPathAsPath, copyOptions);
+		return backupPath;
 	}
 
-	public Boolean getBackupCreatedLastCopy()
-	{
-		return this.backupCreatedLastCopy;
+	private static Path backUpToStore(Path destination, CopySettings settings, Boolean mayLink) throws IOException {
+
+		if (!FileMetadata.getInstance().exists(destination))
+			return null;
+
+		String timeStamp = newBackupTimeStamp();
+		Path blob = settings.getBackupStore().store(destination, getRecordedHash(settings, destination), mayLink);
+		recordBackup(settings, timeStamp, destination, blob, blob.getFileName().toString());
+
+		//remove the read-only attribute, as we're going to overwrite it
+		clearReadOnly(destination);
+
+		return blob;
 	}
 
 
+	/**
+	 *
+	 * @return  the content of this file, read (and hashed) once no matter how many destinations it's copied to
+	 * @throws IOException
+	 */
+	public SourceContent getContent() throws IOException {
 
-	public void createBackup(String destinationPathNoName) throws IOException {
-		String timeStamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss" ).format(new Date());
-		String fullDestinationPath = destinationPathNoName + this.name;
-		Path fullDestinationPathAsPath = Paths.get(fullDestinationPath);
+		if (this.content == null) {
+			synchronized (this) {
+				if (this.content == null)
+					this.content = SourceContent.load(this.pathAsPathType);
+			}
+		}
 
-		//if the file already exists, create a backup copy
-		if (Files.exists(fullDestinationPathAsPath)) {
-			this.backupDestinationPath = fullDestinationPath + "_" + timeStamp + BACKUP_FILE_EXTENSION;
-			Files.copy(Paths.get(fullDestinationPath), Paths.get(backupDestinationPath), this.copyOptions);
+		return this.content;
+	}
+
+
+	/**
+	 * Replaces the content of this file with the content with every IFILE include resolved, so that what's
+	 * copied (or merged) is a single self-contained file
+	 *
+	 * @param flattener  resolves the includes; share one to read every included file only once
+	 * @throws InvalidSourceFilesException  if an included file has errors, or files include each other
+	 * @throws IOException
+	 */
+	public synchronized void flattenIncludes(TnsNamesFlattener flattener) throws InvalidSourceFilesException, IOException {
+
+		this.replaceContent(flattener.flatten(this.pathAsPathType, this.getContent().asString(TnsNamesIndex.CHARSET)));
+	}
+
+
+	/**
+	 * Replaces the content of this file with its canonical compact form
+	 *
+	 * @param compactor  how to order the entries and which of the duplicates to keep
+	 * @return           what was kept
+	 * @throws IOException
+	 */
+	public synchronized TnsNamesCompactor.CompactResult compact(TnsNamesCompactor compactor) throws IOException {
+
+		TnsNamesCompactor.CompactResult result = compactor.compact(this.getTnsNamesIndex());
+		this.replaceContent(result.getText());
+		return result;
+	}
+
+
+	//the new content keeps the file's last modified time and permissions, so it's copied the same way the original would be
+	private void replaceContent(String text) throws IOException {
+
+		this.content = this.getContent().withContent(text.getBytes(TnsNamesIndex.CHARSET));
+		this.tnsNamesIndex = null;
+	}
+
+
+	/**
+	 *
+	 * @return  this file parsed as a tnsnames.ora; parsed once no matter how many destinations it's merged into
+	 * @throws IOException
+	 */
+	public TnsNamesIndex getTnsNamesIndex() throws IOException {
+
+		if (this.tnsNamesIndex == null) {
+			synchronized (this) {
+				if (this.tnsNamesIndex == null)
+					this.tnsNamesIndex = TnsNamesIndex.build(new StringReader(this.getContent().asString(TnsNamesIndex.CHARSET)));
+			}
+		}
+
+		return this.tnsNamesIndex;
+	}
+
+
+	/**
+	 * With destination listings, a destination that's missing or has a different size is known to differ without
+	 * a stat, and one with the same size and last modified time as the source file is taken to be the same
+	 * (the copy gives the destination the source's time). Anything else is compared byte by byte.
+	 */
+	private Boolean sameContent(SourceContent source, Path destination, String destinationPathNoName,
+	                            CopySettings settings) throws IOException {
+
+		if (settings.getDestinationListings() == null)
+			return sameContent(source, destination);
+
+		BasicFileAttributes attributes = settings.getDestinationListings().get(destinationPathNoName, this.name);
+		if (attributes == null || attributes.size() != source.getSize())
+			return false;
+
+		//the time only says something about content that's straight from the source file
+		if (source.getSource() != null
+				&& attributes.lastModifiedTime().toMillis() == source.getLastModifiedTime().toMillis())
+			return true;
 
-			//remove the read-only attribute, as we're going to overwrite it
-			Files.setAttribute(fullDestinationPathAsPath, "dos:readonly", false);
+		return contentEquals(source, destination);
+	}
+
+
+	/**
+	 * Compares the sizes first, and only if they match, reads the destination chunk by chunk,
+	 * stopping at the first chunk that differs from the source content
+	 */
+	private static Boolean sameContent(SourceContent source, Path destination) throws IOException {
+
+		BasicFileAttributes attributes = FileMetadata.getInstance().get(destination);
+		if (attributes == null || source.getSize() != attributes.size())
+			return false;
 
-			this.backupCreatedLastCopy = true;
-		} else
-			this.backupCreatedLastCopy = false;
+		return contentEquals(source, destination);
+	}
+
+	private static Boolean contentEquals(SourceContent source, Path destination) throws IOException {
+		try (InputStream destinationStream = Files.newInputStream(destination)) {
+			return source.contentEquals(destinationStream);
+		}
+	}
+
+
+
+	//only Windows has the read-only attribute that stops a file from being overwritten
+	private static void clearReadOnly(Path path) throws IOException {
+		if (DOS_ATTRIBUTES)
+			Files.setAttribute(path, "dos:readonly", false);
+	}
+
+
+	private static String newBackupTimeStamp() {
+		return LocalDateTime.now().format(BackupCatalog.TIMESTAMP_FORMAT);
+	}
 
+	/**
+	 * The timestamp only goes down to the second, so a second backup of the same file within that second
+	 * (e.g. two runs in a row, or a rollback straight after a sync) gets a _N counter instead of the same name
+	 *
+	 * @param destination   the file being backed up
+	 * @param timeStamp     in BackupCatalog.TIMESTAMP_FORMAT
+	 * @return              e.g. tnsnames.ora_2016-03-12_18-57-05.bak, or tnsnames.ora_2016-03-12_18-57-05_2.bak if taken
+	 */
+	private static Path newBackupPath(Path destination, String timeStamp) {
+
+		String prefix = destination.toString() + "_" + timeStamp;
+		Path backupPath = Paths.get(prefix + BACKUP_FILE_EXTENSION);
+		for (int counter = 2; Files.exists(backupPath, LinkOption.NOFOLLOW_LINKS); counter++)
+			backupPath = Paths.get(prefix + "_" + counter + BACKUP_FILE_EXTENSION);
+
+		return backupPath;
 	}
 
 
+	//the hash of the destination's current content, if the ledger knows it
+	private static String getRecordedHash(CopySettings settings, Path destination) {
+		return settings.getLedger() != null ? settings.getLedger().getRecordedHash(destination) : null;
+	}
+
+	private static void recordBackup(CopySettings settings, String timeStamp, Path destination, Path backupPath,
+	                                 String knownHash) throws IOException {
+
+		if (settings.getJournal() != null)
+			settings.getJournal().backedUp(destination.toString(), backupPath.toString());
+
+		if (settings.getBackupCatalog() == null)
+			return;
+
+		String hash = knownHash != null ? knownHash : ContentHash.of(backupPath);
+		settings.getBackupCatalog().record(timeStamp, destination, backupPath, hash);
+	}
+
+
+	/**
+	 *
+	 * @param destinationPathNoName the directory holding the file to back up
+	 * @return                      the backup, null if there was no file to back up
+	 * @throws IOException
+	 */
+	public Path createBackup(String destinationPathNoName) throws IOException {
+		return this.createBackup(destinationPathNoName, new CopySettings());
+	}
+
+	private Path createBackup(String destinationPathNoName, CopySettings settings) throws IOException {
+		String timeStamp = newBackupTimeStamp();
+		Path fullDestinationPathAsPath = Paths.get(destinationPathNoName + this.name);
+
+		//if the file already exists, create a backup copy
+		if (!FileMetadata.getInstance().exists(fullDestinationPathAsPath))
+			return null;
+
+		String knownHash = getRecordedHash(settings, fullDestinationPathAsPath);
+		Path backupPath = newBackupPath(fullDestinationPathAsPath, timeStamp);
+		Files.copy(fullDestinationPathAsPath, backupPath, COPY_OPTIONS);
+		recordBackup(settings, timeStamp, fullDestinationPathAsPath, backupPath, knownHash);
+
+		//remove the read-only attribute, as we're going to overwrite it
+		clearReadOnly(fullDestinationPathAsPath);
 
-	public String getBackupFullPath() {
-		return this.backupDestinationPath;
+		return backupPath;
 	}
 
 
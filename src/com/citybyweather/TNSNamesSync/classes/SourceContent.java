@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+
+/**
+ * The content of a source file, read once and then written to any number of destinations.
+ * Small files are read into a heap buffer, large ones are memory mapped. The hash is computed
+ * while reading, so the source is never read a second time just to hash it.
+ *
+ * Instances are immutable and can be shared by concurrent copies; every write works on its own view of the buffer.
+ */
+public class SourceContent {
+
+	//anything bigger than this is mapped instead of being read into the heap
+	private static final long MAP_THRESHOLD = 16 * 1024 * 1024;
+	private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+	private final Path source;
+	private final ByteBuffer content;
+	private final String hash;
+	private final FileTime lastModifiedTime;
+	//the source file's permissions (or DOS attributes) to give the destinations, null if there's no source file
+	private final BasicFileAttributes sourceAttributes;
+
+
+	private SourceContent(Path source, ByteBuffer content, String hash, FileTime lastModifiedTime,
+	                      BasicFileAttributes sourceAttributes) {
+		this.source = source;
+		this.content = content;
+		this.hash = hash;
+		this.lastModifiedTime = lastModifiedTime;
+		this.sourceAttributes = sourceAttributes;
+	}
+
+
+	public static SourceContent load(Path source) throws IOException {
+
+		MessageDigest digest = ContentHash.newDigest();
+		BasicFileAttributes attributes = FileMetadata.getInstance().getWithPermissions(source);
+		if (attributes == null)
+			throw new NoSuchFileException(source.toString());
+		FileTime lastModifiedTime = attributes.lastModifiedTime();
+		ByteBuffer content;
+
+		try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+
+			long size = channel.size();
+			if (size > MAP_THRESHOLD) {
+				content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				digest.update(content.duplicate());
+
+			} else {
+				content = ByteBuffer.allocate((int) size);
+				while (content.hasRemaining()) {
+
+					int chunkStart = content.position();
+					content.limit(Math.min(content.capacity(), chunkStart + READ_CHUNK_SIZE));
+					if (channel.read(content) == -1)
+						break;
+
+					//hash the chunk that was just read
+					ByteBuffer chunk = content.duplicate();
+					chunk.flip().position(chunkStart);
+					digest.update(chunk);
+					content.limit(content.capacity());
+				}
+				content.flip();
+			}
+		}
+
+		return new SourceContent(source, content.asReadOnlyBuffer(), ContentHash.toHex(digest.digest()), lastModifiedTime,
+				attributes);
+	}
+
+
+	/**
+	 *
+	 * @param content           content built in memory, e.g. a merged file
+	 * @param lastModifiedTime  the time to give the destinations it's written to
+	 */
+	public static SourceContent of(byte[] content, FileTime lastModifiedTime) {
+		return new SourceContent(null, ByteBuffer.wrap(content).asReadOnlyBuffer(), ContentHash.of(content), lastModifiedTime,
+				null);
+	}
+
+
+	/**
+	 *
+	 * @param content   content built from this one, e.g. the compacted or merged file
+	 * @return          the content, written with this content's last modified time and permissions
+	 */
+	public SourceContent withContent(byte[] content) {
+		return new SourceContent(null, ByteBuffer.wrap(content).asReadOnlyBuffer(), ContentHash.of(content),
+				this.lastModifiedTime, this.sourceAttributes);
+	}
+
+
+	public String asString(Charset charset) {
+		return charset.decode(this.content.duplicate()).toString();
+	}
+
+
+	/**
+	 * Writes the content over the destination (creating it if needed), and gives it the source's last modified time
+	 * and its POSIX permissions (or DOS attributes on Windows), the same way a copy with COPY_ATTRIBUTES would.
+	 * Content that wasn't read from a file has no permissions to give, the destination keeps its own
+	 */
+	public void writeTo(Path destination) throws IOException {
+		this.writeTo(destination, false);
+	}
+
+
+	/**
+	 *
+	 * @param destination   the file to write
+	 * @param sync          if true, the data is forced to disk before returning
+	 */
+	public void writeTo(Path destination, Boolean sync) throws IOException {
+
+		ByteBuffer view = this.content.duplicate();
+
+		try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			while (view.hasRemaining())
+				channel.write(view);
+
+			if (sync)
+				channel.force(true);
+		}
+
+		copyPermissions(this.sourceAttributes, destination);
+		Files.setLastModifiedTime(destination, this.lastModifiedTime);
+	}
+
+
+	/**
+	 * Gives a file the permissions of another: the POSIX permissions, or the DOS attributes on Windows.
+	 * What the target's file system doesn't support is left as it is
+	 *
+	 * @param attributes  the other file's attributes, as read by FileMetadata; nothing is done if null
+	 * @param target      the file to change
+	 * @throws IOException
+	 */
+	public static void copyPermissions(BasicFileAttributes attributes, Path target) throws IOException {
+
+		try {
+			if (attributes instanceof PosixFileAttributes)
+				Files.setPosixFilePermissions(target, ((PosixFileAttributes) attributes).permissions());
+
+			else if (attributes instanceof DosFileAttributes) {
+				DosFileAttributes dosAttributes = (DosFileAttributes) attributes;
+				Files.setAttribute(target, "dos:hidden", dosAttributes.isHidden());
+				Files.setAttribute(target, "dos:system", dosAttributes.isSystem());
+				Files.setAttribute(target, "dos:archive", dosAttributes.isArchive());
+				Files.setAttribute(target, "dos:readonly", dosAttributes.isReadOnly());
+			}
+		} catch (UnsupportedOperationException e) {
+			//e.g. a POSIX source copied onto a file system without permissions
+		}
+	}
+
+
+	/**
+	 *
+	 * @param other a stream positioned at the beginning of the content to compare with
+	 * @return      true if the stream holds exactly this content. Stops reading at the first difference
+	 */
+	public Boolean contentEquals(InputStream other) throws IOException {
+
+		ByteBuffer view = this.content.duplicate();
+		byte[] buffer = new byte[READ_CHUNK_SIZE];
+		byte[] expected = new byte[READ_CHUNK_SIZE];
+
+		while (view.hasRemaining()) {
+
+			int length = Math.min(view.remaining(), buffer.length);
+			if (other.readNBytes(buffer, 0, length) != length)
+				return false;
+
+			view.get(expected, 0, length);
+			if (!Arrays.equals(buffer, 0, length, expected, 0, length))
+				return false;
+		}
+
+		return other.read() == -1;
+	}
+
+
+	//null for content that wasn't read from a file
+	public Path getSource() {
+		return this.source;
+	}
+
+	public String getHash() {
+		return this.hash;
+	}
+
+	public long getSize() {
+		return this.content.limit();
+	}
+
+	public FileTime getLastModifiedTime() {
+		return this.lastModifiedTime;
+	}
+}
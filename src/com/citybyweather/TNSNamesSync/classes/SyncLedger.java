@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Remembers, per destination file, the hash of the source that was written there during the last successful
+ * sync, along with the size and last modified time the destination had right after the write.
+ * As long as a destination still has that size and time, and the source hash hasn't changed,
+ * the destination is known to be up to date without reading it.
+ *
+ * The ledger is a tab separated text file, one destination per line:
+ *	destination path, source hash, size, last modified (millis)
+ */
+public class SyncLedger {
+
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	private final Path ledgerPath;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile Boolean modified = false;
+
+
+	public SyncLedger(Path ledgerPath) {
+		this.ledgerPath = ledgerPath;
+	}
+
+
+	/**
+	 * Reads the ledger from disk. A missing or unreadable ledger just means every destination gets compared again
+	 */
+	public void load() {
+
+		this.entries.clear();
+		if (!Files.exists(this.ledgerPath))
+			return;
+
+		try {
+			List<String> lines = Files.readAllLines(this.ledgerPath, StandardCharsets.UTF_8);
+			for (String line : lines) {
+				String[] fields = line.split(FIELD_SEPARATOR);
+				if (fields.length != 4)
+					continue;
+
+				this.entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+			}
+		} catch (IOException | NumberFormatException e) {
+			System.out.println("Sync ledger [" + this.ledgerPath + "] could not be read, ignoring it");
+			this.entries.clear();
+		}
+	}
+
+
+	/**
+	 * Writes the ledger to a temp file next to it and moves it over the old one,
+	 * so a crash at any point leaves either the old or the new ledger, never a partial one
+	 */
+	public void save() throws IOException {
+
+		if (!this.modified)
+			return;
+
+		Files.createDirectories(this.ledgerPath.getParent());
+		Path tempPath = this.ledgerPath.resolveSibling(this.ledgerPath.getFileName() + TEMP_FILE_EXTENSION);
+
+		try (OutputStream stream = Files.newOutputStream(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+		     BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+
+			for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+				writer.write(entry.getKey() + FIELD_SEPARATOR + entry.getValue().sourceHash + FIELD_SEPARATOR
+						+ entry.getValue().size + FIELD_SEPARATOR + entry.getValue().lastModifiedMillis);
+				writer.newLine();
+			}
+		}
+
+		try {
+			Files.move(tempPath, this.ledgerPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempPath, this.ledgerPath, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		this.modified = false;
+	}
+
+
+	/**
+	 *
+	 * @param destination   the destination file
+	 * @param sourceHash    hash of the content that's about to be copied there
+	 * @return              true if the last sync wrote this content and the destination hasn't been touched since.
+	 *                      Costs at most a single stat of the destination, shared with the rest of the run
+	 */
+	public Boolean isUpToDate(Path destination, String sourceHash) {
+
+		Entry entry = this.entries.get(destination.toString());
+		if (entry == null || !entry.sourceHash.equals(sourceHash))
+			return false;
+
+		try {
+			BasicFileAttributes attributes = FileMetadata.getInstance().get(destination);
+			return attributes != null && attributes.size() == entry.size && attributes.lastModifiedTime().toMillis() == entry.lastModifiedMillis;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 *
+	 * @param destination   the destination file
+	 * @return              the hash of the content the last sync wrote there, if the destination hasn't been
+	 *                      touched since; null otherwise
+	 */
+	public String getRecordedHash(Path destination) {
+
+		Entry entry = this.entries.get(destination.toString());
+		if (entry == null || !this.isUpToDate(destination, entry.sourceHash))
+			return null;
+
+		return entry.sourceHash;
+	}
+
+
+	/**
+	 * Records that the destination now holds the content with the given hash
+	 */
+	public void record(Path destination, String sourceHash) throws IOException {
+
+		BasicFileAttributes attributes = FileMetadata.getInstance().get(destination);
+		if (attributes == null)
+			throw new NoSuchFileException(destination.toString());
+		this.entries.put(destination.toString(),
+				new Entry(sourceHash, attributes.size(), attributes.lastModifiedTime().toMillis()));
+		this.modified = true;
+	}
+
+
+	public Path getLedgerPath() {
+		return this.ledgerPath;
+	}
+
+
+
+	private static class Entry {
+
+		private final String sourceHash;
+		private final long size;
+		private final long lastModifiedMillis;
+
+		Entry(String sourceHash, long size, long lastModifiedMillis) {
+			this.sourceHash = sourceHash;
+			this.size = size;
+			this.lastModifiedMillis = lastModifiedMillis;
+		}
+	}
+}
@@ -0,0 +1,474 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import com.citybyweather.TNSNamesSync.enums.AliasOrder;
+import com.citybyweather.TNSNamesSync.enums.DuplicatePolicy;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Holds the command line switches. Anything that doesn't start with "--" is treated as
+ * the path to the files to copy, which keeps the original "TNSNamesSync.exe path" usage working.
+ */
+public class SyncOptions {
+
+	private static final String OPTION_PREFIX = "--";
+	private static final String OPTION_PARALLEL = "--parallel";
+	private static final String OPTION_BATCH_DISCOVERY = "--batch-discovery";
+	private static final String OPTION_IF_DIFFERENT = "--if-different";
+	private static final String OPTION_LEDGER = "--ledger";
+	private static final String OPTION_STATE_DIR = "--state-dir";
+	private static final String OPTION_ATOMIC = "--atomic";
+	private static final String OPTION_BACKUP_STORE = "--backup-store";
+	private static final String OPTION_KEEP_LAST = "--keep-last";
+	private static final String OPTION_KEEP_DAYS = "--keep-days";
+	private static final String OPTION_KEEP_ONE_PER_CONTENT = "--keep-one-per-content";
+	private static final String OPTION_ROLLBACK = "--rollback";
+	private static final String OPTION_MERGE = "--merge";
+	private static final String OPTION_FLATTEN = "--flatten";
+	private static final String OPTION_COMPACT = "--compact";
+	private static final String OPTION_RESOLVE = "--resolve";
+	private static final String OPTION_INCLUDE = "--include";
+	private static final String OPTION_EXCLUDE = "--exclude";
+	private static final String OPTION_PIPELINE = "--pipeline";
+	private static final String OPTION_DISCOVERY = "--discovery";
+	private static final String OPTION_FLEET = "--fleet";
+	private static final String OPTION_TARGET_TIMEOUT = "--target-timeout";
+	private static final String OPTION_RETRIES = "--retries";
+	private static final String OPTION_JOURNAL = "--journal";
+	private static final String OPTION_LOCK_WAIT = "--lock-wait";
+	private static final String OPTION_DUPLICATES = "--duplicates";
+	private static final String OPTION_ALIAS_ORDER = "--alias-order";
+	private static final String OPTION_ALIAS_FREQUENCIES = "--alias-frequencies";
+
+	private static final String TIMESTAMP_PATTERN = "^\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}$";
+
+	private static final String STATE_DIR_NAME = "TNSNamesSync";
+	private static final String LEDGER_FILE_NAME = "sync-ledger.txt";
+	private static final String BACKUP_STORE_DIR_NAME = "backup-store";
+	private static final String BACKUP_CATALOG_FILE_NAME = "backup-catalog.txt";
+	private static final String ALIAS_INDEX_DIR_NAME = "alias-index";
+	private static final String JOURNAL_FILE_NAME = "run-journal.txt";
+	private static final String RUN_LOCK_FILE_NAME = "run.lock";
+
+	private String sourcePath;
+	private Integer parallelism = 1;
+	private Boolean batchDiscovery = false;
+	private Boolean onlyIfDifferent = false;
+	private Boolean useLedger = false;
+	private String stateDir;
+	private Boolean atomic = false;
+	private Boolean useBackupStore = false;
+	private RetentionPolicy retentionPolicy = new RetentionPolicy();
+	private Boolean rollback = false;
+	private Boolean merge = false;
+	private Boolean flatten = false;
+	private Boolean compact = false;
+	private DuplicatePolicy duplicatePolicy = DuplicatePolicy.FIRST_WINS;
+	private AliasOrder aliasOrder = AliasOrder.SOURCE;
+	private String aliasFrequenciesPath;
+	//the last of the switches that only apply to --compact, to check it was passed too
+	private String compactOption;
+	private String resolveAlias;
+	private List<String> includes = new ArrayList<>();
+	private List<String> excludes = new ArrayList<>();
+	private Boolean pipeline = false;
+	//null means the finder's default providers for this OS
+	private List<String> discoveryProviders;
+	private String fleetManifestPath;
+	private Integer targetTimeoutSeconds = 120;
+	private Integer retries = 2;
+	//the last of the switches that only apply to --fleet, to check it was passed too
+	private String fleetOption;
+	private Boolean useJournal = false;
+	private Integer lockWaitSeconds = 0;
+	private String rollbackTimeStamp;
+
+
+	public SyncOptions() {}
+
+
+	/**
+	 *
+	 * @param args  command line arguments
+	 * @return      the parsed options
+	 * @throws IllegalArgumentException if a switch is unknown or its value is missing/invalid
+	 */
+	public static SyncOptions parse(String[] args) {
+
+		SyncOptions options = new SyncOptions();
+		List<String> positional = new ArrayList<>();
+
+		for (int i = 0; i < args.length; i++) {
+
+			String arg = args[i];
+			if (!arg.startsWith(OPTION_PREFIX)) {
+				positional.add(arg);
+				continue;
+			}
+
+			switch (arg) {
+				case OPTION_PARALLEL:
+					options.parallelism = parsePositiveInt(arg, valueOf(args, ++i, arg));
+					break;
+				case OPTION_BATCH_DISCOVERY:
+					options.batchDiscovery = true;
+					break;
+				case OPTION_IF_DIFFERENT:
+					options.onlyIfDifferent = true;
+					break;
+				case OPTION_LEDGER:
+					//the ledger only makes sense when unchanged destinations are skipped
+					options.useLedger = true;
+					options.onlyIfDifferent = true;
+					break;
+				case OPTION_ATOMIC:
+					options.atomic = true;
+					break;
+				case OPTION_BACKUP_STORE:
+					options.useBackupStore = true;
+					break;
+				case OPTION_KEEP_LAST:
+					options.retentionPolicy.setKeepLast(parsePositiveInt(arg, valueOf(args, ++i, arg)));
+					break;
+				case OPTION_KEEP_DAYS:
+					options.retentionPolicy.setKeepDays(parsePositiveInt(arg, valueOf(args, ++i, arg)));
+					break;
+				case OPTION_KEEP_ONE_PER_CONTENT:
+					options.retentionPolicy.setKeepOnePerContent(true);
+					break;
+				case OPTION_ROLLBACK:
+					options.rollback = true;
+					//the timestamp is optional; without it, the newest backups are restored
+					if (i + 1 < args.length && args[i + 1].matches(TIMESTAMP_PATTERN))
+						options.rollbackTimeStamp = args[++i];
+					break;
+				case OPTION_MERGE:
+					options.merge = true;
+					break;
+				case OPTION_FLATTEN:
+					options.flatten = true;
+					break;
+				case OPTION_COMPACT:
+					options.compact = true;
+					break;
+				case OPTION_DUPLICATES:
+					options.compactOption = arg;
+					options.duplicatePolicy = DuplicatePolicy.fromString(valueOf(args, ++i, arg));
+					if (options.duplicatePolicy == null)
+						throw new IllegalArgumentException("Option " + arg + " expects first or last, got [" + args[i] + "]");
+					break;
+				case OPTION_ALIAS_ORDER:
+					options.compactOption = arg;
+					options.aliasOrder = AliasOrder.fromString(valueOf(args, ++i, arg));
+					if (options.aliasOrder == null || options.aliasOrder == AliasOrder.FREQUENCY)
+						throw new IllegalArgumentException("Option " + arg + " expects source or sorted, got [" + args[i] + "]");
+					break;
+				case OPTION_ALIAS_FREQUENCIES:
+					//ordering by frequency only makes sense with the counts to order by
+					options.compactOption = arg;
+					options.aliasFrequenciesPath = valueOf(args, ++i, arg);
+					options.aliasOrder = AliasOrder.FREQUENCY;
+					break;
+				case OPTION_RESOLVE:
+					options.resolveAlias = valueOf(args, ++i, arg);
+					break;
+				case OPTION_INCLUDE:
+					options.includes.add(valueOf(args, ++i, arg));
+					break;
+				case OPTION_EXCLUDE:
+					options.excludes.add(valueOf(args, ++i, arg));
+					break;
+				case OPTION_PIPELINE:
+					options.pipeline = true;
+					break;
+				case OPTION_DISCOVERY:
+					options.discoveryProviders = new ArrayList<>();
+					for (String provider : valueOf(args, ++i, arg).split(","))
+						if (!provider.trim().isEmpty())
+							options.discoveryProviders.add(provider.trim().toLowerCase());
+					if (options.discoveryProviders.isEmpty())
+						throw new IllegalArgumentException("Missing value for option " + arg);
+					for (String provider : options.discoveryProviders)
+						if (!OracleHomeFinder.PROVIDER_NAMES.contains(provider))
+							throw new IllegalArgumentException("Option " + arg + " expects a list of " + String.join(", ", OracleHomeFinder.PROVIDER_NAMES) + ", got [" + provider + "]");
+					break;
+				case OPTION_FLEET:
+					options.fleetManifestPath = valueOf(args, ++i, arg);
+					break;
+				case OPTION_TARGET_TIMEOUT:
+					options.fleetOption = arg;
+					options.targetTimeoutSeconds = parsePositiveInt(arg, valueOf(args, ++i, arg));
+					break;
+				case OPTION_RETRIES:
+					//0 turns retrying off
+					options.fleetOption = arg;
+					options.retries = parseNonNegativeInt(arg, valueOf(args, ++i, arg));
+					break;
+				case OPTION_JOURNAL:
+					options.useJournal = true;
+					break;
+				case OPTION_LOCK_WAIT:
+					options.lockWaitSeconds = parseNonNegativeInt(arg, valueOf(args, ++i, arg));
+					break;
+				case OPTION_STATE_DIR:
+					options.stateDir = valueOf(args, ++i, arg);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+
+		//the path is optional; if it's not there, the current dir is used
+		options.sourcePath = positional.isEmpty() ? System.getProperty("user.dir") : positional.get(0);
+
+		if (options.compactOption != null && !options.compact)
+			throw new IllegalArgumentException("Option " + options.compactOption + " needs " + OPTION_COMPACT);
+
+		if (options.fleetOption != null && options.fleetManifestPath == null)
+			throw new IllegalArgumentException("Option " + options.fleetOption + " needs " + OPTION_FLEET);
+
+		if (options.rollback && options.resolveAlias != null)
+			throw new IllegalArgumentException("Option " + OPTION_ROLLBACK + " can't be used with " + OPTION_RESOLVE);
+
+		if (options.fleetManifestPath != null && (options.rollback || options.resolveAlias != null))
+			throw new IllegalArgumentException("Option " + OPTION_FLEET + " can't be used with " + (options.rollback ? OPTION_ROLLBACK : OPTION_RESOLVE));
+
+		if (!options.excludes.isEmpty() && options.includes.isEmpty())
+			throw new IllegalArgumentException("Option " + OPTION_EXCLUDE + " needs " + OPTION_INCLUDE);
+
+		if (options.stateDir == null)
+			options.stateDir = defaultStateDir();
+
+		return options;
+	}
+
+
+	/**
+	 * The state (ledger etc.) is kept per machine: under ProgramData on Windows,
+	 * or under the user's home dir where there is no ProgramData
+	 */
+	private static String defaultStateDir() {
+
+		String programData = System.getenv("ProgramData");
+		if (programData != null)
+			return Paths.get(programData, STATE_DIR_NAME).toString();
+
+		return Paths.get(System.getProperty("user.home"), "." + STATE_DIR_NAME).toString();
+	}
+
+
+	private static String valueOf(String[] args, int index, String option) {
+		if (index >= args.length)
+			throw new IllegalArgumentException("Missing value for option " + option);
+
+		return args[index];
+	}
+
+	private static Integer parsePositiveInt(String option, String value) {
+
+		Integer parsed = parseInt(option, value);
+		if (parsed < 1)
+			throw new IllegalArgumentException("Option " + option + " must be 1 or greater");
+
+		return parsed;
+	}
+
+	private static Integer parseNonNegativeInt(String option, String value) {
+
+		Integer parsed = parseInt(option, value);
+		if (parsed < 0)
+			throw new IllegalArgumentException("Option " + option + " must be 0 or greater");
+
+		return parsed;
+	}
+
+	private static Integer parseInt(String option, String value) {
+
+		try {
+			return Integer.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Option " + option + " expects a number, got [" + value + "]");
+		}
+	}
+
+
+	public String getSourcePath() {
+		return this.sourcePath;
+	}
+
+	public Integer getParallelism() {
+		return this.parallelism;
+	}
+
+	public Boolean isBatchDiscovery() {
+		return this.batchDiscovery;
+	}
+
+	public List<String> getDiscoveryProviders() {
+		return this.discoveryProviders;
+	}
+
+	public Boolean isOnlyIfDifferent() {
+		return this.onlyIfDifferent;
+	}
+
+	public Boolean isUseLedger() {
+		return this.useLedger;
+	}
+
+	public Boolean isAtomic() {
+		return this.atomic;
+	}
+
+	public Boolean isUseBackupStore() {
+		return this.useBackupStore;
+	}
+
+	public Path getBackupStoreDir() {
+		return this.getStateDir().resolve(BACKUP_STORE_DIR_NAME);
+	}
+
+	public Path getBackupCatalogPath() {
+		return this.getStateDir().resolve(BACKUP_CATALOG_FILE_NAME);
+	}
+
+	public RetentionPolicy getRetentionPolicy() {
+		return this.retentionPolicy;
+	}
+
+	public Boolean isMerge() {
+		return this.merge;
+	}
+
+	public Boolean isFlatten() {
+		return this.flatten;
+	}
+
+	public Boolean isCompact() {
+		return this.compact;
+	}
+
+	public DuplicatePolicy getDuplicatePolicy() {
+		return this.duplicatePolicy;
+	}
+
+	public AliasOrder getAliasOrder() {
+		return this.aliasOrder;
+	}
+
+	//null unless --alias-frequencies was passed
+	public Path getAliasFrequenciesPath() {
+		return this.aliasFrequenciesPath != null ? Paths.get(this.aliasFrequenciesPath) : null;
+	}
+
+	public Boolean isResolve() {
+		return this.resolveAlias != null;
+	}
+
+	public String getResolveAlias() {
+		return this.resolveAlias;
+	}
+
+	public Path getAliasIndexDir() {
+		return this.getStateDir().resolve(ALIAS_INDEX_DIR_NAME);
+	}
+
+	//with --include, the whole source tree is synced instead of just the FileNames files
+	public Boolean isTreeSync() {
+		return !this.includes.isEmpty();
+	}
+
+	public List<String> getIncludes() {
+		return this.includes;
+	}
+
+	public List<String> getExcludes() {
+		return this.excludes;
+	}
+
+	public Boolean isPipeline() {
+		return this.pipeline;
+	}
+
+	public Boolean isRollback() {
+		return this.rollback;
+	}
+
+	//yyyy-MM-dd_HH-mm-ss, or null for the newest backups
+	public String getRollbackTimeStamp() {
+		return this.rollbackTimeStamp;
+	}
+
+	public Path getStateDir() {
+		return Paths.get(this.stateDir);
+	}
+
+	public Boolean isUseJournal() {
+		return this.useJournal;
+	}
+
+	public Path getJournalPath() {
+		return this.getStateDir().resolve(JOURNAL_FILE_NAME);
+	}
+
+	//how long to wait for another run to finish, or to let go of a destination dir
+	public Integer getLockWaitSeconds() {
+		return this.lockWaitSeconds;
+	}
+
+	public Path getRunLockPath() {
+		return this.getStateDir().resolve(RUN_LOCK_FILE_NAME);
+	}
+
+	public Path getLedgerPath() {
+		return this.getStateDir().resolve(LEDGER_FILE_NAME);
+	}
+
+	public Boolean isFleet() {
+		return this.fleetManifestPath != null;
+	}
+
+	public String getFleetManifestPath() {
+		return this.fleetManifestPath;
+	}
+
+	public Integer getTargetTimeoutSeconds() {
+		return this.targetTimeoutSeconds;
+	}
+
+	public Integer getRetries() {
+		return this.retries;
+	}
+
+	public Boolean isParallel() {
+		return this.parallelism > 1;
+	}
+}
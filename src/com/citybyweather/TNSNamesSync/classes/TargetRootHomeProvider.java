@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.classes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the homes of another machine whose system drive is reachable under a root dir, e.g. \\host\c$,
+ * or a local dir laid out the same way. The inventory and oratab are read under the root, and every home
+ * path they list is moved under the root too: C:\oracle\product\client_1 becomes \\host\c$\oracle\product\client_1.
+ * There's no registry or environment to read remotely, so those aren't looked at
+ */
+public class TargetRootHomeProvider implements OracleHomeProvider {
+
+	public static final String NAME = "target";
+
+
+	private static final String[][] inventoryDirs = {
+			{ "Program Files", "Oracle", "Inventory" },
+			{ "Program Files (x86)", "Oracle", "Inventory" } };
+	private static final String[][] oraInstLocFiles = { { "etc", "oraInst.loc" }, { "var", "opt", "oracle", "oraInst.loc" } };
+	private static final String[][] oratabFiles = { { "etc", "oratab" }, { "var", "opt", "oracle", "oratab" } };
+
+	private final Path root;
+
+
+	/**
+	 *
+	 * @param root  where the machine's system drive (or / ) is reachable
+	 */
+	public TargetRootHomeProvider(Path root) {
+		this.root = root;
+	}
+
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+
+	@Override
+	public void find(Consumer<OracleHome> onFound) throws Exception {
+
+		//home path under the root -> name; the inventory and oratab usually list the same homes
+		Map<String, String> homes = new LinkedHashMap<>();
+
+		for (String[] inventoryDir : inventoryDirs)
+			this.addInventoryHomes(homes, this.resolve(inventoryDir));
+
+		for (String[] oraInstLoc : oraInstLocFiles) {
+			Path oraInstLocPath = this.resolve(oraInstLoc);
+			String inventoryDir = Files.isReadable(oraInstLocPath) ? InventoryHomeProvider.parseOraInstLoc(oraInstLocPath) : null;
+			if (inventoryDir != null)
+				this.addInventoryHomes(homes, Paths.get(this.rebase(inventoryDir)));
+		}
+
+		for (String[] oratab : oratabFiles) {
+			Path oratabPath = this.resolve(oratab);
+			if (!Files.isReadable(oratabPath))
+				continue;
+			for (Map.Entry<String, String> home : OratabHomeProvider.parseOratab(oratabPath).entrySet())
+				homes.putIfAbsent(this.rebase(home.getKey()), home.getValue());
+		}
+
+		for (Map.Entry<String, String> home : homes.entrySet()) {
+			OracleHome oh = new OracleHome(home.getValue(), home.getKey());
+			if (oh.exists())
+				onFound.accept(oh);
+		}
+	}
+
+
+	private void addInventoryHomes(Map<String, String> homes, Path inventoryDir) throws Exception {
+
+		Path inventoryFile = InventoryHomeProvider.getInventoryFile(inventoryDir);
+		if (!Files.isReadable(inventoryFile))
+			return;
+
+		for (Map.Entry<String, String> home : InventoryHomeProvider.parseInventory(inventoryFile).entrySet())
+			homes.putIfAbsent(this.rebase(home.getKey()), home.getValue());
+	}
+
+
+	private Path resolve(String[] names) {
+
+		Path path = this.root;
+		for (String name : names)
+			path = path.resolve(name);
+		return path;
+	}
+
+
+	/**
+	 * Drops the drive letter (or the leading /) of a path as the machine sees it, and puts the rest under the root.
+	 * Either separator is accepted, as the path may come from a machine with another OS than this one
+	 */
+	public String rebase(String path) {
+
+		String relative = path.trim().replaceFirst("^[A-Za-z]:", "");
+		Path rebased = this.root;
+		for (String name : relative.split("[\\\\/]+"))
+			if (!name.isEmpty())
+				rebased = rebased.resolve(name);
+
+		return rebased.toString();
+	}
+}
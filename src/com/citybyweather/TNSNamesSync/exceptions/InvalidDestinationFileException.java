@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.exceptions;
+
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesError;
+
+import java.io.IOException;
+import java.util.List;
+
+
+/**
+ * A destination tnsnames.ora that can't be merged into, because the entries with errors would be dropped.
+ * It's an IOException so a merge that's refused fails the same way a copy that can't write does
+ */
+public class InvalidDestinationFileException extends IOException {
+
+	public static final long serialVersionUID = 42L;
+	public List<TnsNamesError> errors;
+
+	public InvalidDestinationFileException(List<TnsNamesError> errors) {
+
+		super("Invalid Destination File");
+		this.errors = errors;
+	}
+
+
+	@Override
+	public String getMessage() {
+
+		StringBuilder errorMessage = new StringBuilder();
+
+		for (TnsNamesError error : this.errors)
+			errorMessage.append("- ").append(error).append("\n");
+
+		return errorMessage.toString();
+	}
+
+
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.exceptions;
+
+import com.citybyweather.TNSNamesSync.tnsnames.TnsNamesError;
+
+import java.util.List;
+import java.util.Map;
+
+
+public class InvalidSourceFilesException extends Exception {
+
+	public static final long serialVersionUID = 42L;
+	public Map<String, List<TnsNamesError>> errors;
+
+	public InvalidSourceFilesException(Map<String, List<TnsNamesError>> errors) {
+
+		super("Invalid Source Files");
+		this.errors = errors;
+	}
+
+
+	@Override
+	public String getMessage() {
+
+		StringBuilder errorMessage = new StringBuilder();
+
+
+		for (Map.Entry<String, List<TnsNamesError>> file : this.errors.entrySet()) {
+			for (TnsNamesError error : file.getValue())
+				errorMessage.append("- ").append(file.getKey()).append(", ").append(error).append("\n");
+		}
+
+		return errorMessage.toString();
+	}
+
+
+}
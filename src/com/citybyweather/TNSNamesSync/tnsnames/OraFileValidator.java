@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import com.citybyweather.TNSNamesSync.enums.FileNames;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Checks a tnsnames.ora or sqlnet.ora before it's copied anywhere. Both files share the same
+ * "NAME = value" syntax, so both are parsed with TnsNamesParser and checked for:
+ *	- syntax errors, unbalanced parentheses included
+ *	- aliases (or sqlnet.ora parameters) defined more than once; IFILE may be repeated
+ *	- IFILE references to files that can't be read
+ * sqlnet.ora parameters that aren't known here are only warned about: the list can't keep up with every
+ * Oracle release, and a newer parameter shouldn't stop the files from being copied.
+ */
+public class OraFileValidator {
+
+	public static final String IFILE = "IFILE";
+
+	//sqlnet.ora parameters that don't fall under one of the prefixes below
+	private static final Set<String> SQLNET_PARAMETERS = new HashSet<>(Arrays.asList(
+			"ACCEPT_MD5_CERTS", "ACCEPT_SHA1_CERTS", "ADD_SSLV3_TO_DEFAULT", "ADR_BASE", "BEQUEATH_DETACH",
+			"DEFAULT_SDU_SIZE", "DIAG_ADR_ENABLED", "DISABLE_OOB", "DISABLE_OOB_AUTO", "ENCRYPTION_WALLET_LOCATION",
+			"EXADIRECT_FLOW_CONTROL", "EXADIRECT_RECVPOLL", "HTTPS_SSL_VERSION", IFILE, "IPC.KEEPALIVE",
+			"RECV_BUF_SIZE", "SDP.PF_INET_SDP", "SEC_USER_AUDIT_ACTION_BANNER", "SEC_USER_UNAUTHORIZED_ACCESS_BANNER",
+			"SEND_BUF_SIZE", "USE_CMAN", "USE_DEDICATED_SERVER", "WALLET_LOCATION", "WALLET_OVERRIDE"));
+
+	//whole families of sqlnet.ora parameters, e.g. SQLNET.EXPIRE_TIME, NAMES.DIRECTORY_PATH, TRACE_LEVEL_CLIENT
+	private static final List<String> SQLNET_PARAMETER_PREFIXES = Arrays.asList(
+			"SQLNET.", "NAMES.", "TCP.", "TNSPING.", "NNFL.", "RADIUS.", "SSL_", "TRACE_", "LOG_");
+
+	//%VAR% (Windows) or $VAR / ${VAR} in an IFILE path
+	private static final Pattern ENVIRONMENT_VARIABLE = Pattern.compile("%(\\w+)%|\\$\\{(\\w+)}|\\$(\\w+)");
+
+
+	private OraFileValidator() {}
+
+
+	/**
+	 *
+	 * @param directory  the directory the file is in; relative IFILE paths are resolved against it
+	 * @param index      the parsed file
+	 * @return           every problem found, in file order; empty if the file is fine
+	 */
+	public static List<TnsNamesError> validate(Path directory, TnsNamesIndex index) {
+		return validate(directory, index, false);
+	}
+
+
+	/**
+	 *
+	 * @param directory         the directory the file is in; relative IFILE paths are resolved against it
+	 * @param index             the parsed file
+	 * @param allowDuplicates   true if aliases defined more than once are fine, because compacting the file
+	 *                          keeps one definition of each
+	 * @return                  every problem found, in file order; empty if the file is fine
+	 */
+	public static List<TnsNamesError> validate(Path directory, TnsNamesIndex index, Boolean allowDuplicates) {
+
+		List<TnsNamesError> errors = new ArrayList<>(index.getErrors());
+
+		for (TnsEntry duplicate : allowDuplicates ? Collections.<TnsEntry>emptyList() : index.getDuplicates()) {
+			for (String alias : duplicate.getAliases()) {
+				//a file may include any number of others
+				TnsEntry first = index.lookup(alias);
+				if (first != duplicate && !TnsNamesIndex.normalize(alias).equals(IFILE))
+					errors.add(new TnsNamesError(duplicate.getLine(), duplicate.getColumn(),
+							"[" + alias + "] is already defined at line " + first.getLine()));
+			}
+		}
+
+		for (TnsEntry entry : index.getEntries()) {
+			for (String alias : entry.getAliases()) {
+
+				if (TnsNamesIndex.normalize(alias).equals(IFILE))
+					checkIncludedFile(entry, directory, errors);
+			}
+		}
+
+		errors.sort(Comparator.comparingInt(TnsNamesError::getLine).thenComparingInt(TnsNamesError::getColumn));
+		return errors;
+	}
+
+
+	/**
+	 *
+	 * @param fileName   which of the files this is; only sqlnet.ora has its parameter names checked
+	 * @param index      the parsed file
+	 * @return           the sqlnet.ora parameters that aren't known here, in file order; they're still copied
+	 */
+	public static List<TnsNamesError> warnings(FileNames fileName, TnsNamesIndex index) {
+
+		List<TnsNamesError> warnings = new ArrayList<>();
+		if (fileName != FileNames.SQLNET)
+			return warnings;
+
+		for (TnsEntry entry : index.getEntries()) {
+			for (String alias : entry.getAliases()) {
+				if (!isSqlNetParameter(TnsNamesIndex.normalize(alias)))
+					warnings.add(new TnsNamesError(entry.getLine(), entry.getColumn(),
+							"unknown sqlnet.ora parameter [" + alias + "]"));
+			}
+		}
+
+		return warnings;
+	}
+
+
+	private static Boolean isSqlNetParameter(String name) {
+
+		if (SQLNET_PARAMETERS.contains(name))
+			return true;
+
+		for (String prefix : SQLNET_PARAMETER_PREFIXES) {
+			if (name.startsWith(prefix))
+				return true;
+		}
+
+		return false;
+	}
+
+
+	private static void checkIncludedFile(TnsEntry entry, Path directory, List<TnsNamesError> errors) {
+
+		String value = entry.getValue();
+		Path included = value.startsWith("(") ? null : resolveIncludedFile(value, directory);
+
+		if (included == null)
+			errors.add(new TnsNamesError(entry.getLine(), entry.getColumn(), "IFILE isn't a valid path: " + value));
+		else if (!Files.isRegularFile(included) || !Files.isReadable(included))
+			errors.add(new TnsNamesError(entry.getLine(), entry.getColumn(), "IFILE can't be read: " + included));
+	}
+
+
+	/**
+	 *
+	 * @param value      the IFILE value as written; it may be quoted and may hold environment variables
+	 * @param directory  what relative paths are resolved against
+	 * @return           the path, or null if it isn't one
+	 */
+	public static Path resolveIncludedFile(String value, Path directory) {
+
+		String path = value.trim();
+		if (path.length() > 1 && path.startsWith("\"") && path.endsWith("\""))
+			path = path.substring(1, path.length() - 1);
+
+		Matcher matcher = ENVIRONMENT_VARIABLE.matcher(path);
+		StringBuffer expanded = new StringBuffer();
+		while (matcher.find()) {
+			String name = matcher.group(1) != null ? matcher.group(1)
+					: matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+			String variable = System.getenv(name);
+			matcher.appendReplacement(expanded, Matcher.quoteReplacement(variable != null ? variable : matcher.group()));
+		}
+		matcher.appendTail(expanded);
+
+		try {
+			return directory.resolve(Paths.get(expanded.toString())).normalize();
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * One net service name entry, e.g.
+ *
+ *	SALES, SALES.WORLD =
+ *	  (DESCRIPTION = (ADDRESS = (PROTOCOL = TCP)(HOST = sales-db)(PORT = 1521))(CONNECT_DATA = (SERVICE_NAME = sales)))
+ *
+ * The text is kept exactly as it was in the file (from the first alias to the end of the value, comments included),
+ * the value has the comments taken out.
+ */
+public class TnsEntry {
+
+	private final List<String> aliases;
+	private final String value;
+	private final String text;
+	private final int line;
+	private final int column;
+	private final long offset;
+	private final long endOffset;
+	private String compactValue;
+
+
+	TnsEntry(List<String> aliases, String value, String text, int line, int column, long offset, long endOffset) {
+		this.aliases = Collections.unmodifiableList(aliases);
+		this.value = value;
+		this.text = text;
+		this.line = line;
+		this.column = column;
+		this.offset = offset;
+		this.endOffset = endOffset;
+	}
+
+
+	//the names as written; there's more than one for "A, B = (...)"
+	public List<String> getAliases() {
+		return this.aliases;
+	}
+
+	//the descriptor (or simple value such as an IFILE path) without comments
+	public String getValue() {
+		return this.value;
+	}
+
+	//the entry exactly as written in the file
+	public String getText() {
+		return this.text;
+	}
+
+	//1 based line of the first alias
+	public int getLine() {
+		return this.line;
+	}
+
+	public int getColumn() {
+		return this.column;
+	}
+
+	//character offset of the first alias from the start of the file
+	public long getOffset() {
+		return this.offset;
+	}
+
+	//character offset just past the end of the value
+	public long getEndOffset() {
+		return this.endOffset;
+	}
+
+	/**
+	 *
+	 * @return  the value with the whitespace outside of quoted strings taken out, so that two values
+	 *          that only differ in layout compare equal
+	 */
+	public String getCompactValue() {
+
+		if (this.compactValue == null) {
+
+			StringBuilder sb = new StringBuilder(this.value.length());
+			Boolean quoted = false;
+			for (int i = 0; i < this.value.length(); i++) {
+				char c = this.value.charAt(i);
+				if (c == '"')
+					quoted = !quoted;
+				if (quoted || !Character.isWhitespace(c))
+					sb.append(c);
+			}
+
+			this.compactValue = sb.toString();
+		}
+
+		return this.compactValue;
+	}
+
+	public Boolean isDescriptor() {
+		return this.value.startsWith("(");
+	}
+}
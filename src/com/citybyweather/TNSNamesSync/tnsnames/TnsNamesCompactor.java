@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import com.citybyweather.TNSNamesSync.enums.AliasOrder;
+import com.citybyweather.TNSNamesSync.enums.DuplicatePolicy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Writes a tnsnames.ora in a canonical, compact form: one line per entry, no comments, no whitespace outside of
+ * quoted strings, and every alias defined only once. Oracle clients read the file top to bottom on every lookup,
+ * so a smaller file with the most used aliases first is a faster file.
+ *
+ * IFILE entries go at the end, in their original order, so an included file can't take an alias over
+ * from the file itself whatever the order.
+ */
+public class TnsNamesCompactor {
+
+	private final DuplicatePolicy duplicatePolicy;
+	private final AliasOrder aliasOrder;
+	private final Map<String, Long> frequencies;
+
+
+	/**
+	 *
+	 * @param duplicatePolicy  which definition of an alias defined more than once is kept
+	 * @param aliasOrder       the order entries are written in
+	 * @param frequencies      how often each (normalized) alias is used; only needed for AliasOrder.FREQUENCY
+	 */
+	public TnsNamesCompactor(DuplicatePolicy duplicatePolicy, AliasOrder aliasOrder, Map<String, Long> frequencies) {
+		this.duplicatePolicy = duplicatePolicy;
+		this.aliasOrder = aliasOrder;
+		this.frequencies = frequencies != null ? frequencies : Collections.<String, Long>emptyMap();
+	}
+
+
+	/**
+	 * Reads alias usage counts, one "alias count" per line (separated by whitespace); "#" starts a comment.
+	 * An alias listed more than once has its counts added up.
+	 */
+	public static Map<String, Long> loadFrequencies(Path path) throws IOException {
+
+		Map<String, Long> frequencies = new HashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(path, TnsNamesIndex.CHARSET)) {
+
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+
+				lineNumber++;
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+
+				String[] fields = line.split("\\s+");
+				try {
+					frequencies.merge(TnsNamesIndex.normalize(fields[0]), Long.valueOf(fields[1]), Long::sum);
+				} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+					throw new IOException(path + ", line " + lineNumber + ": expected an alias and a count");
+				}
+			}
+		}
+
+		return frequencies;
+	}
+
+
+	public CompactResult compact(TnsNamesIndex index) {
+
+		CompactResult result = new CompactResult();
+		List<CompactEntry> entries = new ArrayList<>();
+		List<TnsEntry> includes = new ArrayList<>();
+		Set<String> claimed = new HashSet<>();
+
+		List<TnsEntry> source = new ArrayList<>(index.getEntries());
+		if (this.duplicatePolicy == DuplicatePolicy.LAST_WINS)
+			Collections.reverse(source);
+
+		for (TnsEntry entry : source) {
+
+			if (isInclude(entry)) {
+				includes.add(entry);
+				continue;
+			}
+
+			//an entry keeps only the aliases no kept definition has claimed yet
+			List<String> aliases = new ArrayList<>();
+			for (String alias : entry.getAliases()) {
+				if (claimed.add(TnsNamesIndex.normalize(alias)))
+					aliases.add(alias);
+				else
+					result.droppedAliases++;
+			}
+
+			if (!aliases.isEmpty())
+				entries.add(new CompactEntry(aliases, entry));
+		}
+
+		if (this.duplicatePolicy == DuplicatePolicy.LAST_WINS) {
+			Collections.reverse(entries);
+			Collections.reverse(includes);
+		}
+
+		if (this.aliasOrder == AliasOrder.SORTED)
+			entries.sort(Comparator.comparing(CompactEntry::getSortKey));
+		else if (this.aliasOrder == AliasOrder.FREQUENCY) {
+			for (CompactEntry entry : entries)
+				entry.frequency = this.frequencyOf(entry.aliases);
+			//a stable sort, so entries that are used equally often stay in source order
+			entries.sort(Comparator.comparingLong((CompactEntry entry) -> entry.frequency).reversed());
+		}
+
+		StringBuilder text = new StringBuilder();
+		for (CompactEntry entry : entries) {
+			text.append(String.join(",", entry.aliases)).append('=').append(entry.entry.getCompactValue()).append('\n');
+			result.aliases += entry.aliases.size();
+		}
+		for (TnsEntry include : includes)
+			text.append(String.join(",", include.getAliases())).append('=').append(include.getValue()).append('\n');
+
+		result.text = text.toString();
+		result.entries = entries.size() + includes.size();
+		return result;
+	}
+
+
+	private long frequencyOf(List<String> aliases) {
+
+		long frequency = 0;
+		for (String alias : aliases) {
+			Long count = this.frequencies.get(TnsNamesIndex.normalize(alias));
+			if (count != null)
+				frequency += count;
+		}
+
+		return frequency;
+	}
+
+
+	private static Boolean isInclude(TnsEntry entry) {
+		return !entry.isDescriptor() && entry.getAliases().size() == 1
+				&& TnsNamesIndex.normalize(entry.getAliases().get(0)).equals(OraFileValidator.IFILE);
+	}
+
+
+	private static class CompactEntry {
+
+		private final List<String> aliases;
+		private final TnsEntry entry;
+		private long frequency;
+
+		private CompactEntry(List<String> aliases, TnsEntry entry) {
+			this.aliases = aliases;
+			this.entry = entry;
+		}
+
+		private String getSortKey() {
+			return TnsNamesIndex.normalize(this.aliases.get(0));
+		}
+	}
+
+
+	public static class CompactResult {
+
+		private String text;
+		private int entries = 0;
+		private int aliases = 0;
+		private int droppedAliases = 0;
+
+
+		private CompactResult() {}
+
+
+		public String getText() {
+			return this.text;
+		}
+
+		public int getEntries() {
+			return this.entries;
+		}
+
+		public int getAliases() {
+			return this.aliases;
+		}
+
+		//definitions of aliases that were already defined, left out of the compact file
+		public int getDroppedAliases() {
+			return this.droppedAliases;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import com.citybyweather.TNSNamesSync.exceptions.InvalidSourceFilesException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Replaces every IFILE entry of a tnsnames.ora with the content of the file it points to, following includes
+ * of includes, so the result is a single file Oracle clients can look aliases up in without opening anything else.
+ *
+ * Every included file is read once per flattener, however many times it's referenced. A file that's included
+ * more than once only has its entries written the first time (the same as the first definition of an alias
+ * being the one Oracle uses); the later IFILE lines are kept as comments.
+ */
+public class TnsNamesFlattener {
+
+	private static final String FLATTENED_NOTE = " (included below by TNSNamesSync)";
+	private static final String ALREADY_INCLUDED_NOTE = " (already included above by TNSNamesSync)";
+
+	//the real path of every file read so far, with its text
+	private final Map<Path, String> texts = new HashMap<>();
+	private int includeCount = 0;
+
+
+	public TnsNamesFlattener() {}
+
+
+	/**
+	 *
+	 * @param file  where the text came from; relative IFILE paths are resolved against its directory
+	 * @param text  the tnsnames.ora text
+	 * @return      the text with every include replaced by the included content
+	 * @throws InvalidSourceFilesException  if an included file has errors, or files include each other
+	 * @throws IOException  if an included file can't be read
+	 */
+	public synchronized String flatten(Path file, String text) throws InvalidSourceFilesException, IOException {
+
+		Map<String, List<TnsNamesError>> errors = new LinkedHashMap<>();
+		Deque<Path> chain = new ArrayDeque<>();
+		chain.push(file.toRealPath());
+
+		String flattened = this.flatten(file, text, chain, new HashSet<>(), errors);
+		if (!errors.isEmpty())
+			throw new InvalidSourceFilesException(errors);
+
+		return flattened;
+	}
+
+
+	private String flatten(Path file, String text, Deque<Path> chain, Set<Path> included,
+	                       Map<String, List<TnsNamesError>> errors) throws IOException {
+
+		TnsNamesIndex index = TnsNamesIndex.build(new StringReader(text));
+		if (!index.getErrors().isEmpty() && chain.size() > 1) {
+			errors.put(file.toString(), index.getErrors());
+			return text;
+		}
+
+		StringBuilder flattened = new StringBuilder(text.length());
+		int copiedTo = 0;
+
+		for (TnsEntry entry : index.getEntries()) {
+
+			if (!isInclude(entry))
+				continue;
+
+			Path includedFile = OraFileValidator.resolveIncludedFile(entry.getValue(), file.toAbsolutePath().getParent());
+			if (includedFile == null || !Files.isReadable(includedFile)) {
+				addError(errors, file, entry, "IFILE can't be read: " + entry.getValue());
+				continue;
+			}
+
+			includedFile = includedFile.toRealPath();
+			if (chain.contains(includedFile)) {
+				List<String> cycle = new ArrayList<>();
+				chain.descendingIterator().forEachRemaining(path -> cycle.add(path.toString()));
+				cycle.add(includedFile.toString());
+				addError(errors, file, entry, "IFILE cycle: " + String.join(" -> ", cycle));
+				continue;
+			}
+
+			flattened.append(text, copiedTo, (int) entry.getOffset());
+			copiedTo = (int) entry.getEndOffset();
+
+			if (!included.add(includedFile)) {
+				flattened.append(commentOut(entry)).append(ALREADY_INCLUDED_NOTE);
+				continue;
+			}
+
+			flattened.append(commentOut(entry)).append(FLATTENED_NOTE).append("\n");
+			chain.push(includedFile);
+			flattened.append(this.flatten(includedFile, this.read(includedFile), chain, included, errors));
+			chain.pop();
+		}
+
+		flattened.append(text, copiedTo, text.length());
+		return flattened.toString();
+	}
+
+
+	private String read(Path file) throws IOException {
+
+		String text = this.texts.get(file);
+		if (text == null) {
+			text = new String(Files.readAllBytes(file), TnsNamesIndex.CHARSET);
+			this.texts.put(file, text);
+			this.includeCount++;
+		}
+
+		return text;
+	}
+
+
+	private static Boolean isInclude(TnsEntry entry) {
+
+		for (String alias : entry.getAliases()) {
+			if (TnsNamesIndex.normalize(alias).equals(OraFileValidator.IFILE))
+				return !entry.isDescriptor();
+		}
+
+		return false;
+	}
+
+
+	private static String commentOut(TnsEntry entry) {
+		return "# " + entry.getText().replace("\n", "\n# ");
+	}
+
+
+	private static void addError(Map<String, List<TnsNamesError>> errors, Path file, TnsEntry entry, String message) {
+		errors.computeIfAbsent(file.toString(), key -> new ArrayList<>())
+				.add(new TnsNamesError(entry.getLine(), entry.getColumn(), message));
+	}
+
+
+	//how many distinct files have been read for includes
+	public int getIncludeCount() {
+		return this.includeCount;
+	}
+}
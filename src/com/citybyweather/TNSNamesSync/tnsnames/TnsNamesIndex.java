@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * All of the entries of a tnsnames.ora, looked up by alias. Aliases are matched without regard to case,
+ * the same as Oracle does. When an alias is defined more than once, the first definition is the one looked up,
+ * and the later ones are listed as duplicates.
+ */
+public class TnsNamesIndex implements TnsNamesListener {
+
+	/*
+		tnsnames.ora is plain ASCII in practice. Reading it as ISO-8859-1 maps every byte to one character,
+		so anything else in there still comes back out byte for byte when the text is written again
+	*/
+	public static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+	private final List<TnsEntry> entries = new ArrayList<>();
+	private final Map<String, TnsEntry> byAlias = new HashMap<>();
+	private final List<TnsEntry> duplicates = new ArrayList<>();
+	private final List<TnsNamesError> errors = new ArrayList<>();
+
+
+	public TnsNamesIndex() {}
+
+
+	public static TnsNamesIndex build(Path path) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, CHARSET)) {
+			return build(reader);
+		}
+	}
+
+	public static TnsNamesIndex build(Reader reader) throws IOException {
+		TnsNamesIndex index = new TnsNamesIndex();
+		TnsNamesParser.parse(reader, index);
+		return index;
+	}
+
+
+	public static String normalize(String alias) {
+		return alias.toUpperCase(Locale.ROOT);
+	}
+
+
+	@Override
+	public void entry(TnsEntry entry) {
+
+		this.entries.add(entry);
+
+		Boolean duplicate = false;
+		for (String alias : entry.getAliases()) {
+			String key = normalize(alias);
+			if (this.byAlias.containsKey(key))
+				duplicate = true;
+			else
+				this.byAlias.put(key, entry);
+		}
+
+		if (duplicate)
+			this.duplicates.add(entry);
+	}
+
+	@Override
+	public void error(TnsNamesError error) {
+		this.errors.add(error);
+	}
+
+
+	//null if the alias isn't defined
+	public TnsEntry lookup(String alias) {
+		return this.byAlias.get(normalize(alias));
+	}
+
+	public Boolean contains(String alias) {
+		return this.byAlias.containsKey(normalize(alias));
+	}
+
+	//every entry, in file order
+	public List<TnsEntry> getEntries() {
+		return Collections.unmodifiableList(this.entries);
+	}
+
+	//entries that redefine at least one alias defined earlier in the file
+	public List<TnsEntry> getDuplicates() {
+		return Collections.unmodifiableList(this.duplicates);
+	}
+
+	public List<TnsNamesError> getErrors() {
+		return Collections.unmodifiableList(this.errors);
+	}
+
+	public int getAliasCount() {
+		return this.byAlias.size();
+	}
+}
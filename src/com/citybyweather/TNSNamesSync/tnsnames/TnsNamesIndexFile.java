@@ -0,0 +1,306 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * A tnsnames.ora alias index saved as a binary file, so that an alias can be looked up by memory mapping the file
+ * and reading a couple of slots, instead of parsing the tnsnames.ora again.
+ *
+ * Layout (big endian):
+ *	header   magic "TNSIDX", version, source hash (64 hex chars), alias count, slot count
+ *	slots    slot count x (alias hash, record offset); open addressing with linear probing, at most half full
+ *	keys     per alias: normalized alias (short length + bytes), offset of its value
+ *	values   per entry: line, value (int length + bytes); shared by all of the entry's aliases
+ *
+ * The source hash is the hash of the tnsnames.ora content the index was built from; an index is only used
+ * for content with that same hash.
+ */
+public class TnsNamesIndexFile {
+
+	private static final byte[] MAGIC = "TNSIDX".getBytes(StandardCharsets.US_ASCII);
+	private static final int VERSION = 1;
+	private static final int HASH_LENGTH = 64;
+	private static final int HEADER_SIZE = MAGIC.length + 4 + HASH_LENGTH + 4 + 4;
+	private static final int SLOT_SIZE = 8;
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	private final ByteBuffer buffer;
+	private final String sourceHash;
+	private final int aliasCount;
+	private final int slotCount;
+
+
+	private TnsNamesIndexFile(ByteBuffer buffer, String sourceHash, int aliasCount, int slotCount) {
+		this.buffer = buffer;
+		this.sourceHash = sourceHash;
+		this.aliasCount = aliasCount;
+		this.slotCount = slotCount;
+	}
+
+
+	/**
+	 * Writes the index to a temp file next to the path and moves it into place, so a reader never maps half a file
+	 *
+	 * @param path        where to write the index
+	 * @param index       the parsed tnsnames.ora
+	 * @param sourceHash  hash of the tnsnames.ora content the index was built from
+	 * @throws IOException
+	 */
+	public static void write(Path path, TnsNamesIndex index, String sourceHash) throws IOException {
+
+		List<byte[]> keys = new ArrayList<>();
+		List<Integer> keyValues = new ArrayList<>();
+		List<byte[]> values = new ArrayList<>();
+		List<Integer> lines = new ArrayList<>();
+		Set<String> written = new HashSet<>();
+		int keysSize = 0, valuesSize = 0;
+
+		//every alias maps to the entry a lookup finds, the same as TnsNamesIndex does;
+		//the aliases of one entry share its value
+		for (TnsEntry entry : index.getEntries()) {
+
+			Boolean valueAdded = false;
+			for (String alias : entry.getAliases()) {
+				if (index.lookup(alias) != entry || !written.add(TnsNamesIndex.normalize(alias)))
+					continue;
+
+				if (!valueAdded) {
+					valueAdded = true;
+					byte[] value = (entry.isDescriptor() ? entry.getCompactValue() : entry.getValue()).getBytes(TnsNamesIndex.CHARSET);
+					values.add(value);
+					lines.add(entry.getLine());
+					valuesSize += 4 + 4 + value.length;
+				}
+
+				byte[] key = encode(alias);
+				keys.add(key);
+				keyValues.add(values.size() - 1);
+				keysSize += 2 + key.length + 4;
+			}
+		}
+
+		int slotCount = Integer.highestOneBit(Math.max(keys.size(), 1) * 2) * 2;
+		int keysOffset = HEADER_SIZE + slotCount * SLOT_SIZE;
+		ByteBuffer buffer = ByteBuffer.allocate(keysOffset + keysSize + valuesSize);
+		buffer.put(MAGIC).putInt(VERSION).put(sourceHash.getBytes(StandardCharsets.US_ASCII));
+		buffer.putInt(keys.size()).putInt(slotCount);
+
+		int[] valueOffsets = new int[values.size()];
+		buffer.position(keysOffset + keysSize);
+		for (int i = 0; i < values.size(); i++) {
+			valueOffsets[i] = buffer.position();
+			buffer.putInt(lines.get(i)).putInt(values.get(i).length).put(values.get(i));
+		}
+
+		int recordOffset = keysOffset;
+		for (int i = 0; i < keys.size(); i++) {
+
+			byte[] key = keys.get(i);
+			int hash = hash(key);
+			int slot = hash & (slotCount - 1);
+			while (buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + 4) != 0)
+				slot = (slot + 1) & (slotCount - 1);
+			buffer.putInt(HEADER_SIZE + slot * SLOT_SIZE, hash);
+			buffer.putInt(HEADER_SIZE + slot * SLOT_SIZE + 4, recordOffset);
+
+			buffer.position(recordOffset);
+			buffer.putShort((short) key.length).put(key).putInt(valueOffsets[keyValues.get(i)]);
+			recordOffset = buffer.position();
+		}
+
+		Files.createDirectories(path.toAbsolutePath().getParent());
+		Path tempPath = path.resolveSibling(path.getFileName() + TEMP_FILE_EXTENSION);
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			buffer.flip();
+			buffer.limit(buffer.capacity());
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(true);
+		}
+
+		try {
+			Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+
+	/**
+	 * Memory maps an index file
+	 *
+	 * @param path        the index file
+	 * @param sourceHash  hash of the tnsnames.ora content the index is wanted for
+	 * @return            the index, or null if there's no index file, it's damaged,
+	 *                    or it was built from different content
+	 * @throws IOException
+	 */
+	public static TnsNamesIndexFile open(Path path, String sourceHash) throws IOException {
+
+		if (!Files.isRegularFile(path))
+			return null;
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+				return null;
+			//the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			byte[] hash = new byte[HASH_LENGTH];
+			buffer.get(magic);
+			int version = buffer.getInt();
+			buffer.get(hash);
+			int aliasCount = buffer.getInt();
+			int slotCount = buffer.getInt();
+
+			if (!Arrays.equals(magic, MAGIC) || version != VERSION
+					|| !new String(hash, StandardCharsets.US_ASCII).equals(sourceHash)
+					|| Integer.bitCount(slotCount) != 1 || HEADER_SIZE + (long) slotCount * SLOT_SIZE > buffer.capacity())
+				return null;
+
+			return new TnsNamesIndexFile(buffer, sourceHash, aliasCount, slotCount);
+
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 *
+	 * @param alias  the alias to look up, in any case
+	 * @return       what the alias points to, or null if it's not defined
+	 */
+	public Lookup lookup(String alias) {
+
+		byte[] key = encode(alias);
+		int hash = hash(key);
+		int slot = hash & (this.slotCount - 1);
+
+		for (int probes = 0; probes < this.slotCount; probes++) {
+
+			int slotOffset = HEADER_SIZE + slot * SLOT_SIZE;
+			int recordOffset = this.buffer.getInt(slotOffset + 4);
+			if (recordOffset == 0)
+				return null;
+
+			if (this.buffer.getInt(slotOffset) == hash && this.keyEquals(recordOffset, key)) {
+				int valueOffset = this.buffer.getInt(recordOffset + 2 + key.length);
+				byte[] value = new byte[this.buffer.getInt(valueOffset + 4)];
+				ByteBuffer record = this.buffer.duplicate();
+				record.position(valueOffset + 8);
+				record.get(value);
+				return new Lookup(this.buffer.getInt(valueOffset), new String(value, TnsNamesIndex.CHARSET));
+			}
+
+			slot = (slot + 1) & (this.slotCount - 1);
+		}
+
+		return null;
+	}
+
+
+	private Boolean keyEquals(int recordOffset, byte[] key) {
+
+		if (this.buffer.getShort(recordOffset) != key.length)
+			return false;
+
+		for (int i = 0; i < key.length; i++) {
+			if (this.buffer.get(recordOffset + 2 + i) != key[i])
+				return false;
+		}
+
+		return true;
+	}
+
+
+	private static byte[] encode(String alias) {
+		return TnsNamesIndex.normalize(alias).getBytes(TnsNamesIndex.CHARSET);
+	}
+
+	//FNV-1a
+	private static int hash(byte[] key) {
+		int hash = 0x811c9dc5;
+		for (byte b : key) {
+			hash ^= b & 0xff;
+			hash *= 0x01000193;
+		}
+		return hash;
+	}
+
+
+	public String getSourceHash() {
+		return this.sourceHash;
+	}
+
+	public int getAliasCount() {
+		return this.aliasCount;
+	}
+
+
+	public static class Lookup {
+
+		private final int line;
+		private final String value;
+
+		private Lookup(int line, String value) {
+			this.line = line;
+			this.value = value;
+		}
+
+		//line of the entry in the tnsnames.ora the index was built from
+		public int getLine() {
+			return this.line;
+		}
+
+		//the descriptor on one line, or the simple value
+		public String getValue() {
+			return this.value;
+		}
+	}
+}
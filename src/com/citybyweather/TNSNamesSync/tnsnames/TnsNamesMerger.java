@@ -0,0 +1,197 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import com.citybyweather.TNSNamesSync.exceptions.InvalidDestinationFileException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Merges the master tnsnames.ora into a destination one, alias by alias, keeping the entries teams added locally.
+ *
+ * The merged file is the master file as is, followed by a marker comment and the local entries. The marker
+ * is what tells, on the next merge, which destination entries came from an earlier master (above it) and which
+ * are local (below it): an alias dropped from the master is removed from the destination, a local one is kept.
+ * Without a marker (a destination that was never merged), every alias not in the master is treated as local.
+ * An entry with both master and local aliases ("TEAM_A, SALES = ...") keeps its local aliases in the local section.
+ *
+ * A destination that doesn't parse isn't merged at all, as the entries that failed to parse would be lost.
+ *
+ * Both files are indexed by alias first, so the merge is linear in the number of entries.
+ */
+public class TnsNamesMerger {
+
+	public static final String LOCAL_SECTION_MARKER =
+			"# ---- Local entries kept by TNSNamesSync merge; add your own entries below this line ----";
+
+
+	private TnsNamesMerger() {}
+
+
+	/**
+	 *
+	 * @param master            the master file's index
+	 * @param masterText        the master file's text
+	 * @param destination       the destination file's index
+	 * @param destinationText   the destination file's text; empty if there's no destination file yet
+	 * @return                  the merged text and what changed
+	 * @throws InvalidDestinationFileException if the destination file has errors
+	 */
+	public static MergeResult merge(TnsNamesIndex master, String masterText,
+	                                TnsNamesIndex destination, String destinationText) throws InvalidDestinationFileException {
+
+		if (!destination.getErrors().isEmpty())
+			throw new InvalidDestinationFileException(destination.getErrors());
+
+		MergeResult result = new MergeResult();
+		int markerOffset = destinationText.indexOf(LOCAL_SECTION_MARKER);
+		List<String> localEntries = new ArrayList<>();
+
+		//normalized values of the master are only worked out once per entry, not per destination alias
+		Map<TnsEntry, String> masterValues = new HashMap<>();
+
+		for (TnsEntry entry : destination.getEntries()) {
+
+			List<String> notInMaster = new ArrayList<>();
+			for (String alias : entry.getAliases()) {
+
+				TnsEntry masterEntry = master.lookup(alias);
+				if (masterEntry == null) {
+					notInMaster.add(alias);
+					continue;
+				}
+
+				String masterValue = masterValues.get(masterEntry);
+				if (masterValue == null) {
+					masterValue = masterEntry.getCompactValue();
+					masterValues.put(masterEntry, masterValue);
+				}
+
+				if (masterValue.equals(entry.getCompactValue()))
+					result.unchanged++;
+				else
+					result.changed++;
+			}
+
+			if (notInMaster.isEmpty())
+				continue;
+
+			if (markerOffset < 0 || entry.getOffset() > markerOffset) {
+				localEntries.add(notInMaster.size() == entry.getAliases().size()
+						? entry.getText() : withAliases(entry, notInMaster));
+				result.local += notInMaster.size();
+			} else
+				result.removed.addAll(notInMaster);
+		}
+
+		for (TnsEntry entry : master.getEntries()) {
+			for (String alias : entry.getAliases()) {
+				if (!destination.contains(alias))
+					result.added++;
+			}
+		}
+
+		result.text = buildText(masterText, localEntries);
+		return result;
+	}
+
+
+	/**
+	 * The entry's text with only the given aliases in front of the "=", the value (and its comments) as written
+	 */
+	private static String withAliases(TnsEntry entry, List<String> aliases) {
+
+		String text = entry.getText();
+		return String.join(", ", aliases) + " " + text.substring(text.indexOf('='));
+	}
+
+
+	private static String buildText(String masterText, List<String> localEntries) {
+
+		if (localEntries.isEmpty())
+			return masterText;
+
+		String lineSeparator = masterText.contains("\r\n") ? "\r\n" : "\n";
+		StringBuilder sb = new StringBuilder(masterText);
+
+		if (!masterText.isEmpty() && !masterText.endsWith("\n"))
+			sb.append(lineSeparator);
+		sb.append(lineSeparator).append(LOCAL_SECTION_MARKER).append(lineSeparator);
+
+		for (String entry : localEntries)
+			sb.append(lineSeparator).append(entry).append(lineSeparator);
+
+		return sb.toString();
+	}
+
+
+
+	public static class MergeResult {
+
+		private String text;
+		private int added = 0;
+		private int changed = 0;
+		private int unchanged = 0;
+		private final List<String> removed = new ArrayList<>();
+		private int local = 0;
+
+		public String getText() {
+			return this.text;
+		}
+
+		//aliases in the master that the destination didn't have
+		public int getAdded() {
+			return this.added;
+		}
+
+		//aliases whose value in the master differs from the destination's
+		public int getChanged() {
+			return this.changed;
+		}
+
+		public int getUnchanged() {
+			return this.unchanged;
+		}
+
+		//aliases an earlier master put in the destination that the current one no longer has
+		public int getRemoved() {
+			return this.removed.size();
+		}
+
+		//the aliases counted by getRemoved, as written in the destination
+		public List<String> getRemovedAliases() {
+			return this.removed;
+		}
+
+		//aliases only the destination has, which are kept
+		public int getLocal() {
+			return this.local;
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Artur Charukhchyan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.citybyweather.TNSNamesSync.tnsnames;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Streaming tnsnames.ora parser. The file is read through a small buffer and every entry is handed to the
+ * listener as soon as its value ends, so only one entry is ever held at a time.
+ *
+ * What's understood:
+ *	- "#" comments, on their own lines, at the end of a line or inside a descriptor
+ *	- several aliases for one entry: "A, B = (...)"
+ *	- descriptors spanning any number of lines; quoted strings inside them may hold parentheses
+ *	- simple values ("IFILE = path") continued on following lines that start with whitespace
+ *
+ * A new entry has to start at the beginning of a line, the same as Oracle requires.
+ */
+public class TnsNamesParser {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int EOF = -1;
+
+
+	private final Reader reader;
+	private final TnsNamesListener listener;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferLength = 0;
+	private int bufferPosition = 0;
+
+	//position of the next character
+	private int line = 1;
+	private int column = 1;
+	private long offset = 0;
+
+	//the raw text of the entry being parsed
+	private final StringBuilder text = new StringBuilder();
+
+
+	private TnsNamesParser(Reader reader, TnsNamesListener listener) {
+		this.reader = reader;
+		this.listener = listener;
+	}
+
+
+	/**
+	 *
+	 * @param reader    the tnsnames.ora content; read to the end but not closed
+	 * @param listener  gets every entry and every error, in file order
+	 * @throws IOException
+	 */
+	public static void parse(Reader reader, TnsNamesListener listener) throws IOException {
+		new TnsNamesParser(reader, listener).parseEntries();
+	}
+
+
+	private void parseEntries() throws IOException {
+
+		int c;
+		while ((c = this.peek()) != EOF) {
+
+			if (Character.isWhitespace(c))
+				this.next();
+			else if (c == '#')
+				this.skipComment();
+			else if (c == '(' || c == ')') {
+				this.error("'" + (char) c + "' without an alias");
+				this.skipLine();
+			} else
+				this.parseEntry();
+		}
+	}
+
+
+	private void parseEntry() throws IOException {
+
+		int startLine = this.line;
+		int startColumn = this.column;
+		long startOffset = this.offset;
+		this.text.setLength(0);
+
+		if (startColumn != 1)
+			this.error("an entry has to start at the beginning of a line");
+
+		List<String> aliases = this.parseAliases();
+		if (aliases == null)
+			return;
+
+		//the value may start on the same line, or on a following one
+		int c;
+		while ((c = this.peek()) != EOF && (Character.isWhitespace(c) || c == '#')) {
+			if (c == '#')
+				this.skipComment();
+			else
+				this.textNext();
+		}
+
+		String value;
+		if (c == '(') {
+			value = this.parseDescriptor(startLine);
+			if (value == null)
+				return;
+		} else if (c == EOF || this.column == 1)
+			value = null;
+		else
+			value = this.parseSimpleValue();
+
+		if (value == null || value.isEmpty()) {
+			this.error(startLine, startColumn, "no value for " + aliases.get(0));
+			return;
+		}
+
+		//a simple value's text runs up to the next line; the entry itself ends with the value
+		int textLength = this.text.length();
+		while (textLength > 0 && Character.isWhitespace(this.text.charAt(textLength - 1)))
+			textLength--;
+
+		this.listener.entry(new TnsEntry(aliases, value, this.text.substring(0, textLength), startLine, startColumn,
+				startOffset, startOffset + textLength));
+	}
+
+
+	/**
+	 * Reads "A, B =" up to and including the equals sign
+	 *
+	 * @return  the aliases, or null if it's not an alias list (the error has been reported and the line skipped)
+	 */
+	private List<String> parseAliases() throws IOException {
+
+		List<String> aliases = new ArrayList<>();
+		StringBuilder alias = new StringBuilder();
+		Boolean aliasEnded = false;
+
+		while (true) {
+
+			int c = this.peek();
+			if (c == EOF || c == '\n' || c == '\r' || c == '#' || c == '(' || c == ')') {
+				this.error("expected '=' after " + (aliases.isEmpty() && alias.length() == 0 ? "the alias" : "[" + alias + "]"));
+				this.skipLine();
+				return null;
+			}
+
+			this.textNext();
+			if (c == '=' || c == ',') {
+				if (alias.length() == 0) {
+					this.error("empty alias");
+					this.skipLine();
+					return null;
+				}
+
+				aliases.add(alias.toString());
+				alias.setLength(0);
+				aliasEnded = false;
+
+				if (c == '=')
+					return aliases;
+
+			} else if (Character.isWhitespace(c)) {
+				aliasEnded = alias.length() != 0;
+
+			} else {
+				if (aliasEnded) {
+					this.error("expected ',' or '=' after [" + alias + "]");
+					this.skipLine();
+					return null;
+				}
+				alias.append((char) c);
+			}
+		}
+	}
+
+
+	/**
+	 * Reads a parenthesized descriptor up to the parenthesis that closes the first one.
+	 * A line starting with anything but whitespace, a parenthesis or a comment can't be part of the descriptor,
+	 * so it's taken as the start of the next entry and the descriptor as left unclosed.
+	 *
+	 * @return  the descriptor without comments, or null if it's never closed (the error has been reported)
+	 */
+	private String parseDescriptor(int entryLine) throws IOException {
+
+		StringBuilder value = new StringBuilder();
+		int depth = 0;
+		Boolean quoted = false;
+		int c;
+
+		while ((c = this.peek()) != EOF) {
+
+			if (c == '#' && !quoted) {
+				this.skipComment();
+				continue;
+			}
+
+			if (this.column == 1 && !quoted && !Character.isWhitespace(c) && c != '(' && c != ')')
+				break;
+
+			this.textNext();
+			value.append((char) c);
+
+			if (c == '"')
+				quoted = !quoted;
+			else if (quoted)
+				continue;
+			else if (c == '(')
+				depth++;
+			else if (c == ')' && --depth == 0)
+				return value.toString();
+		}
+
+		this.error("unbalanced parentheses: " + depth + " left open in the entry starting at line " + entryLine);
+		return null;
+	}
+
+
+	/**
+	 * Reads a value to the end of the line, plus any following lines that start with whitespace
+	 */
+	private String parseSimpleValue() throws IOException {
+
+		StringBuilder value = new StringBuilder();
+		int c;
+
+		while (true) {
+
+			while ((c = this.peek()) != EOF && c != '\n' && c != '\r' && c != '#') {
+				this.textNext();
+				value.append((char) c);
+			}
+			if (c == '#')
+				this.skipComment();
+
+			//continuation lines start with whitespace
+			this.skipLineBreak();
+			c = this.peek();
+			if (c != ' ' && c != '\t')
+				break;
+
+			while ((c = this.peek()) == ' ' || c == '\t')
+				this.textNext();
+			if (c == '#' || c == '\n' || c == '\r' || c == EOF)
+				continue;
+
+			value.append(' ');
+		}
+
+		return value.toString().trim();
+	}
+
+
+	private void skipComment() throws IOException {
+		int c;
+		while ((c = this.peek()) != EOF && c != '\n' && c != '\r')
+			this.textNext();
+	}
+
+	private void skipLine() throws IOException {
+		this.skipComment();
+		this.skipLineBreak();
+	}
+
+	private void skipLineBreak() throws IOException {
+		if (this.peek() == '\r')
+			this.textNext();
+		if (this.peek() == '\n')
+			this.textNext();
+	}
+
+
+	private void error(String message) {
+		this.error(this.line, this.column, message);
+	}
+
+	private void error(int line, int column, String message) {
+		this.listener.error(new TnsNamesError(line, column, message));
+	}
+
+
+	private int peek() throws IOException {
+
+		if (this.bufferPosition == this.bufferLength) {
+			this.bufferLength = this.reader.read(this.buffer);
+			this.bufferPosition = 0;
+			if (this.bufferLength <= 0) {
+				this.bufferLength = 0;
+				return EOF;
+			}
+		}
+
+		return this.buffer[this.bufferPosition];
+	}
+
+	//consumes the next character, keeping track of the position
+	private int next() throws IOException {
+
+		int c = this.peek();
+		if (c == EOF)
+			return EOF;
+
+		this.bufferPosition++;
+		this.offset++;
+		if (c == '\n') {
+			this.line++;
+			this.column = 1;
+		} else
+			this.column++;
+
+		return c;
+	}
+
+	//consumes the next character as part of the current entry's text
+	private void textNext() throws IOException {
+		int c = this.next();
+		if (c != EOF)
+			this.text.append((char) c);
+	}
+}